@@ -16,25 +16,27 @@ public class ArrayListAnalyzeAndTime {
 	private static final int TOTAL_ITERATIONS = 100000000;
 
 	private static final boolean SHUFFLE = Boolean.getBoolean("shuffle");
+	private static final HeapLayout LAYOUT = HeapLayout.valueOf(
+			System.getProperty("layout", SHUFFLE ? "shuffled" : "sequential").toUpperCase(Locale.US));
+	private static final boolean COMPACT = Boolean.getBoolean("compact");
 
 	private final IntList.ViaArrayList list;
+	private final Object keepAlive; // other objects that shape the layout
 	private final long[] address;
 
 	private int dummy; // to avoid HotSpot optimizing away iteration
 
 	private ArrayListAnalyzeAndTime(int size) throws Exception {
 		list = new IntList.ViaArrayList();
-		// fill in list with random values
-		Random random = new Random(1);
-		for	(int i = 0; i < size; i++)
-			list.add(random.nextInt());
-		// optionally shuffle
-		if (SHUFFLE)
-			Collections.shuffle(list, new Random(1));
-		// analyze object addresses
+		// fill in list with random values laid out in heap according to the scenario
+		keepAlive = LAYOUT.fill(list, size);
 		address = new long[size];
-		for (int i = 0; i < size; i++)
-			address[i] = getCurrentObjectAddress(list.get(i));
+		analyzeAddresses();
+	}
+
+	private void analyzeAddresses() {
+		for (int i = 0; i < address.length; i++)
+			address[i] = ObjectLayout.addressOf(list.get(i));
 	}
 
 	private int countPages(int shift, int size) {
@@ -70,13 +72,33 @@ public class ArrayListAnalyzeAndTime {
 		if (args.length != 1) {
 			System.err.println("Usage: " + ArrayListAnalyzeAndTime.class + " <passes>");
 			System.err.println("Where: <passes>  is the number of passes to run the test for.");
+			System.err.println("Use -Dlayout=<layout> to pick one of " + Arrays.asList(HeapLayout.values()));
+			System.err.println("Use -Dcompact=true to repeat analysis and timing after IntList.ViaArrayList.compact().");
+			System.err.println("Use -Dresults=<file> to append results to <file> instead of ArrayListAnalyzeAndTime-<date>.csv.");
+			System.err.println("Use -DgcDistortion=<percent> to flag passes that spent more than <percent> (default 1) in GC.");
 			return;
 		}
 
 		int passes = Integer.decode(args[0]);
 
+		System.out.println("----- OBJECT LAYOUT -----");
+		ObjectLayout.printLayout(Integer.class, ModifiableInt.class);
+
 		ArrayListAnalyzeAndTime instance = new ArrayListAnalyzeAndTime(MAX_SIZE);
+		String name = LAYOUT.name().toLowerCase(Locale.US);
+		try (Results results = Results.open(ArrayListAnalyzeAndTime.class)) {
+			System.out.printf("----- %s LAYOUT -----%n", LAYOUT);
+			instance.analyzeAndTime(passes, results, name);
+			if (COMPACT) {
+				instance.list.compact();
+				instance.analyzeAddresses();
+				System.out.printf("----- %s LAYOUT AFTER COMPACTION -----%n", LAYOUT);
+				instance.analyzeAndTime(passes, results, name + "/compact");
+			}
+		}
+	}
 
+	private void analyzeAndTime(int passes, Results results, String name) {
 		System.out.println("----- MEMORY PAGES ANALYSIS -----");
 		System.out.println("Avg no of accessed pages per object times page size (e.g. effective object size)");
 		System.out.print("[pagesize]: ");
@@ -87,30 +109,28 @@ public class ArrayListAnalyzeAndTime {
 		for (int size = MIN_SIZE; size <= MAX_SIZE; size *= 10) {
 			System.out.printf("[%8d]: ", size);
 			for (int shift = MIN_PAGE_SHIFT; shift <= MAX_PAGE_SHIFT; shift++) {
-				System.out.printf(Locale.US, "%9.1f", (double)instance.countPages(shift, size) * (1 << shift) / size);
+				System.out.printf(Locale.US, "%9.1f", (double)countPages(shift, size) * (1 << shift) / size);
 			}
 			System.out.println();
 		}
 
-		Map<Integer, TimeStats> stats = new HashMap<Integer, TimeStats>();
+		Map<Integer, Stats> stats = new HashMap<Integer, Stats>();
 		for (int pass = 1; pass <= passes; pass++) {
 			System.out.printf("----- PASS %d -----%n", pass);
 			for (int size = MIN_SIZE; size <= MAX_SIZE; size *= 10) {
-				double time = instance.time(size);
-				TimeStats stat = stats.get(size);
+				MemoryProbe probe = MemoryProbe.start();
+				double time = time(size);
+				probe.stop();
+				Stats stat = stats.get(size);
 				if (stat == null)
-					stats.put(size, stat = new TimeStats());
+					stats.put(size, stat = new Stats());
 				if (pass >= STABLE_PASS)
 					stat.add(time);
-				System.out.printf(Locale.US, "[%8d]: %.2f %s ns per item (%d)%n",
-						size, time, stat, instance.dummy);
+				System.out.printf(Locale.US, "[%8d]: %.2f %s ns per item, %s (%d)%n",
+						size, time, stat.toRangeString(), probe.format((double)(TOTAL_ITERATIONS / size) * size), dummy);
 			}
 		}
-	}
-
-	private static native long getCurrentObjectAddress(Object obj);
-
-	static {
-		System.loadLibrary(ArrayListAnalyzeAndTime.class.getName());
+		for (int size = MIN_SIZE; size <= MAX_SIZE; size *= 10)
+			results.record(name, size, 1, "ns/item", true, stats.get(size));
 	}
 }
@@ -0,0 +1,190 @@
+import java.util.*;
+
+/**
+ * Measures latency of dependent loads with pointer chasing through a random cyclic permutation of cache lines,
+ * over working sets from 4 KB to 1 GB, and finds L1/L2/L3/DRAM plateaus in it.
+ * {@link IntListIterationTiming} and {@link IntListThroughput} pick their list sizes around detected cache
+ * capacities with {@link #sweepSizes}. Give the JVM at least twice the largest working set of heap, e.g. {@code -Xmx3g},
+ * otherwise the sweep stops at half of max heap.
+ */
+public class CacheProfiler {
+	private static final int LINE_INTS = 16; // 64 bytes
+	private static final long MIN_WORKING_SET = 4L << 10;
+	private static final long MAX_WORKING_SET = Long.getLong("maxWorkingSet", 1L << 30);
+	private static final int STEPS = 1 << 22;
+	private static final double JUMP = 1.5; // min latency ratio of consecutive points across a level boundary
+	private static final int MIN_PLATEAU_POINTS = 3; // a level spans at least 2x of working set
+
+	private static final String SIZES = System.getProperty("sizes", "cache");
+
+	private static List<Level> levels; // detected once per JVM
+	private static int dummy; // to avoid HotSpot optimizing away pointer chasing
+
+	/**
+	 * One plateau of the latency curve.
+	 */
+	static class Level {
+		final String name;
+		final long size; // largest working set in bytes on the plateau, 0 for memory
+		final double latency; // ns per dependent load
+
+		Level(String name, long size, double latency) {
+			this.name = name;
+			this.size = size;
+			this.latency = latency;
+		}
+
+		@Override
+		public String toString() {
+			return size == 0 ?
+					String.format(Locale.US, "%s: %.1f ns", name, latency) :
+					String.format(Locale.US, "%s: %s, %.1f ns", name, formatBytes(size), latency);
+		}
+	}
+
+	public static void main(String[] args) {
+		for (Level level : detect(true))
+			System.out.println(level);
+	}
+
+	/**
+	 * Levels detected on the first call, without printing the curve.
+	 */
+	static synchronized List<Level> levels() {
+		if (levels == null)
+			levels = detect(false);
+		return levels;
+	}
+
+	/**
+	 * Detects and prints levels unless {@code -Dsizes=decades}. Harnesses call it first,
+	 * while the heap is still empty enough for the largest working sets.
+	 */
+	static void printLevels() {
+		if (!SIZES.equals("decades"))
+			System.out.println("Cache levels: " + levels());
+	}
+
+	/**
+	 * Sizes of a list with {@code bytesPerItem} to sweep in {@code [minSize, maxSize]}: the bounds and, for each cache level,
+	 * the sizes that fill half of it and twice of it, rounded to the nearest of 1, 2 or 5 times a power of ten, so that
+	 * runs with slightly different measured levels time and record the same sizes. With {@code -Dsizes=decades} powers
+	 * of ten from {@code minSize} instead, without profiling.
+	 */
+	static int[] sweepSizes(double bytesPerItem, int minSize, int maxSize) {
+		TreeSet<Integer> sizes = new TreeSet<Integer>();
+		sizes.add(minSize);
+		if (SIZES.equals("decades")) {
+			for (long size = minSize; size <= maxSize; size *= 10)
+				sizes.add((int)size);
+		} else {
+			for (Level level : levels())
+				if (level.size > 0) {
+					addSize(sizes, level.size / 2 / bytesPerItem, minSize, maxSize);
+					addSize(sizes, level.size * 2 / bytesPerItem, minSize, maxSize);
+				}
+		}
+		sizes.add(maxSize);
+		int[] result = new int[sizes.size()];
+		int i = 0;
+		for (int size : sizes)
+			result[i++] = size;
+		return result;
+	}
+
+	private static void addSize(TreeSet<Integer> sizes, double size, int minSize, int maxSize) {
+		long rounded = roundToGrid(size);
+		if (rounded >= minSize && rounded <= maxSize)
+			sizes.add((int)rounded);
+	}
+
+	/**
+	 * Nearest of 1, 2, 5, 10 times the power of ten below {@code size}, by ratio.
+	 */
+	static long roundToGrid(double size) {
+		if (size < 1)
+			return 1;
+		long decade = (long)Math.pow(10, Math.floor(Math.log10(size)));
+		long best = decade;
+		for (long step : new long[] { 2, 5, 10 })
+			if (Math.abs(Math.log(size / (decade * step))) < Math.abs(Math.log(size / best)))
+				best = decade * step;
+		return best;
+	}
+
+	static List<Level> detect(boolean print) {
+		long maxWorkingSet = Math.min(MAX_WORKING_SET, Runtime.getRuntime().maxMemory() / 2);
+		for (int i = 0; i < 10; i++)
+			chase(new int[LINE_INTS], STEPS); // compile chase before the smallest working sets are timed
+		List<Long> workingSets = new ArrayList<Long>();
+		List<Double> latencies = new ArrayList<Double>();
+		for (long ws = MIN_WORKING_SET; ws <= maxWorkingSet; ws *= 2)
+			for (long w : new long[] { ws, ws * 3 / 2 })
+				if (w <= maxWorkingSet) {
+					double latency = latency(w);
+					workingSets.add(w);
+					latencies.add(latency);
+					if (print)
+						System.out.printf(Locale.US, "[%8s]: %6.2f ns per load%n", formatBytes(w), latency);
+				}
+		return findPlateaus(workingSets, latencies);
+	}
+
+	/**
+	 * Splits the curve where latency jumps by more than {@code JUMP} between consecutive points. A segment of
+	 * at least {@code MIN_PLATEAU_POINTS} is a cache level, shorter ones are transitions between levels.
+	 * The last segment is memory, where latency keeps slowly growing with TLB misses.
+	 */
+	private static List<Level> findPlateaus(List<Long> workingSets, List<Double> latencies) {
+		List<Level> result = new ArrayList<Level>();
+		int n = workingSets.size();
+		for (int i = 0; i < n; ) {
+			int j = i;
+			while (j + 1 < n && latencies.get(j + 1) <= latencies.get(j) * JUMP)
+				j++;
+			List<Double> segment = new ArrayList<Double>(latencies.subList(i, j + 1));
+			Collections.sort(segment);
+			double median = segment.get(segment.size() / 2);
+			if (j == n - 1 && !result.isEmpty())
+				result.add(new Level("DRAM", 0, median));
+			else if (j == n - 1 || segment.size() >= MIN_PLATEAU_POINTS)
+				result.add(new Level("L" + (result.size() + 1), workingSets.get(j), median));
+			i = j + 1;
+		}
+		return result;
+	}
+
+	private static double latency(long workingSet) {
+		int lines = (int)(workingSet / 4 / LINE_INTS);
+		int[] a = new int[lines * LINE_INTS];
+		for (int i = 0; i < lines; i++)
+			a[i * LINE_INTS] = i * LINE_INTS;
+		// Sattolo's algorithm makes a single cycle, so chasing from any line visits all of them
+		Random random = new Random(1);
+		for (int i = lines - 1; i > 0; i--) {
+			int j = random.nextInt(i);
+			int t = a[i * LINE_INTS];
+			a[i * LINE_INTS] = a[j * LINE_INTS];
+			a[j * LINE_INTS] = t;
+		}
+		chase(a, Math.min(lines, STEPS)); // bring working set into caches and TLB
+		long start = System.nanoTime();
+		dummy += chase(a, STEPS);
+		return (double)(System.nanoTime() - start) / STEPS;
+	}
+
+	private static int chase(int[] a, int steps) {
+		int p = 0;
+		for (int i = 0; i < steps; i++)
+			p = a[p];
+		return p;
+	}
+
+	static String formatBytes(long bytes) {
+		if (bytes >= 1L << 30 && bytes % (1L << 30) == 0)
+			return (bytes >> 30) + " GB";
+		if (bytes >= 1L << 20 && bytes % (1L << 20) == 0)
+			return (bytes >> 20) + " MB";
+		return (bytes >> 10) + " KB";
+	}
+}
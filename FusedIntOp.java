@@ -0,0 +1,30 @@
+import java.lang.constant.ConstantDescs;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Template of a fused {@link IntOpPipeline} kernel. It is never initialized as is: each pipeline defines
+ * a hidden copy of this class with its composed method handle as class data, so that the handle is
+ * a different constant in each copy.
+ */
+final class FusedIntOp implements IntUnaryOperator {
+	private static final MethodHandle KERNEL = kernel();
+
+	@Override
+	public int applyAsInt(int x) {
+		try {
+			return (int)KERNEL.invokeExact(x);
+		} catch (Throwable e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static MethodHandle kernel() {
+		try {
+			return MethodHandles.classData(MethodHandles.lookup(), ConstantDescs.DEFAULT_NAME, MethodHandle.class);
+		} catch (IllegalAccessException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+}
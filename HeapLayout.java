@@ -0,0 +1,105 @@
+import java.util.*;
+
+/**
+ * Ways to fill {@code ArrayList<Integer>} so that boxed values end up in different places in heap.
+ * Values are the same in all scenarios, only their addresses differ.
+ */
+enum HeapLayout {
+	/**
+	 * Boxed values are allocated in index order with nothing in between.
+	 */
+	SEQUENTIAL {
+		@Override
+		Object fill(List<Integer> list, int size) {
+			Random random = new Random(1);
+			for (int i = 0; i < size; i++)
+				list.add(random.nextInt());
+			return null;
+		}
+	},
+
+	/**
+	 * Boxed values are allocated interleaved with short-lived garbage of random size,
+	 * like a list built by code that does other work in between.
+	 */
+	INTERLEAVED {
+		@Override
+		Object fill(List<Integer> list, int size) {
+			Random random = new Random(1);
+			Random garbage = new Random(2);
+			for (int i = 0; i < size; i++) {
+				list.add(random.nextInt());
+				sink = new byte[garbage.nextInt(MAX_GARBAGE)];
+			}
+			sink = null;
+			return null;
+		}
+	},
+
+	/**
+	 * {@link #INTERLEAVED} followed by a full GC that compacts live objects.
+	 */
+	POST_FULL_GC {
+		@Override
+		Object fill(List<Integer> list, int size) {
+			INTERLEAVED.fill(list, size);
+			System.gc();
+			return null;
+		}
+	},
+
+	/**
+	 * List is built in small steps with young collections in between, while every step also retains
+	 * some unrelated long-lived objects. Boxed values get promoted at different times next to other
+	 * tenured data.
+	 */
+	AGED_TENURED {
+		@Override
+		Object fill(List<Integer> list, int size) {
+			Random random = new Random(1);
+			Random garbage = new Random(2);
+			List<Object> retained = new ArrayList<Object>();
+			int step = Math.max(1, size / AGING_STEPS);
+			for (int i = 0; i < size; i++) {
+				list.add(random.nextInt());
+				byte[] bytes = new byte[garbage.nextInt(MAX_GARBAGE)];
+				if (garbage.nextInt(RETAIN_ONE_IN) == 0)
+					retained.add(bytes);
+				if ((i + 1) % step == 0)
+					churn(YOUNG_GC_CHURN_BYTES);
+			}
+			return retained;
+		}
+	},
+
+	/**
+	 * {@link #SEQUENTIAL} followed by shuffle, so that index order has nothing in common with address order.
+	 */
+	SHUFFLED {
+		@Override
+		Object fill(List<Integer> list, int size) {
+			SEQUENTIAL.fill(list, size);
+			Collections.shuffle(list, new Random(1));
+			return null;
+		}
+	};
+
+	private static final int MAX_GARBAGE = 64;
+	private static final int RETAIN_ONE_IN = 4;
+	private static final int AGING_STEPS = 100;
+	private static final int YOUNG_GC_CHURN_BYTES = 64 << 20;
+
+	private static volatile Object sink; // to avoid HotSpot optimizing away garbage
+
+	/**
+	 * Fills the list with {@code size} values and returns objects that must be kept reachable
+	 * for the layout to stay as generated, or {@code null}.
+	 */
+	abstract Object fill(List<Integer> list, int size);
+
+	private static void churn(int bytes) {
+		for (int i = 0; i < bytes; i += 1024)
+			sink = new byte[1024];
+		sink = null;
+	}
+}
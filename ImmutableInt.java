@@ -0,0 +1,24 @@
+/**
+ * Value-style alternative to {@link ModifiableInt}: it cannot change, so it is shared instead of copied,
+ * and a modification makes a new instance.
+ */
+public final class ImmutableInt {
+    private final int value;
+
+    public ImmutableInt(int value) {
+        this.value = value;
+    }
+
+    public int getValue() {
+        return value;
+    }
+
+    public ImmutableInt withValue(int value) {
+        return new ImmutableInt(value);
+    }
+
+    @Override
+    public String toString() {
+        return String.valueOf(value);
+    }
+}
@@ -0,0 +1,18 @@
+/**
+ * {@link ModifiableIntContainer} of {@link ImmutableInt}, which needs no defensive copies.
+ */
+public class ImmutableIntContainer {
+    private ImmutableInt c;
+
+    public ImmutableIntContainer(ImmutableInt c) {
+        this.c = c;
+    }
+
+    public ImmutableInt getC() {
+        return c;
+    }
+
+    public void setC(ImmutableInt c) {
+        this.c = c;
+    }
+}
@@ -0,0 +1,180 @@
+/**
+ * Map from {@code int} keys to {@code int} values without boxing or per-entry objects: keys and values are
+ * stored in two parallel arrays with open addressing and linear probing. Key {@code 0} marks a free slot
+ * in the arrays, so its entry is kept in separate fields.
+ */
+public class IntIntMap {
+	private static final int FREE = 0;
+
+	/**
+	 * Receives entries of {@link #forEach}.
+	 */
+	public interface EntryConsumer {
+		public void accept(int key, int value);
+	}
+
+	private final float loadFactor;
+	private int[] keys;
+	private int[] values;
+	private int size; // of entries in the arrays
+	private int threshold; // max size before the arrays are doubled
+	private boolean hasFreeKey;
+	private int freeKeyValue;
+
+	public IntIntMap() {
+		this(16, 0.5f);
+	}
+
+	/**
+	 * Holds {@code expectedSize} entries without resizing and keeps at most {@code loadFactor} of slots occupied.
+	 */
+	public IntIntMap(int expectedSize, float loadFactor) {
+		if (!(loadFactor > 0 && loadFactor < 1))
+			throw new IllegalArgumentException("Load factor must be in (0, 1): " + loadFactor);
+		this.loadFactor = loadFactor;
+		allocate(IntSet.capacityFor(expectedSize, loadFactor));
+	}
+
+	public int size() {
+		return size + (hasFreeKey ? 1 : 0);
+	}
+
+	public boolean containsKey(int key) {
+		if (key == FREE)
+			return hasFreeKey;
+		return keys[slot(key)] != FREE;
+	}
+
+	/**
+	 * Value of {@code key}, or {@code defaultValue} when there is none.
+	 */
+	public int get(int key, int defaultValue) {
+		if (key == FREE)
+			return hasFreeKey ? freeKeyValue : defaultValue;
+		int i = slot(key);
+		return keys[i] != FREE ? values[i] : defaultValue;
+	}
+
+	/**
+	 * Associates {@code value} with {@code key}. Returns {@code true} when the key is new.
+	 */
+	public boolean put(int key, int value) {
+		if (key == FREE) {
+			boolean added = !hasFreeKey;
+			hasFreeKey = true;
+			freeKeyValue = value;
+			return added;
+		}
+		int i = slot(key);
+		values[i] = value;
+		if (keys[i] != FREE)
+			return false;
+		keys[i] = key;
+		if (++size > threshold)
+			allocate(keys.length * 2);
+		return true;
+	}
+
+	/**
+	 * Removes {@code key} and shifts the entries that follow it in its run back,
+	 * so that lookups never need tombstones. Returns {@code true} when the key was present.
+	 */
+	public boolean remove(int key) {
+		if (key == FREE) {
+			boolean removed = hasFreeKey;
+			hasFreeKey = false;
+			return removed;
+		}
+		int[] keys = this.keys;
+		int mask = keys.length - 1;
+		int i = slot(key);
+		if (keys[i] == FREE)
+			return false;
+		for (int j = (i + 1) & mask; keys[j] != FREE; j = (j + 1) & mask) {
+			int home = IntSet.hash(keys[j]) & mask;
+			// entry at j can fill the gap at i when its home slot is not cyclically in (i, j]
+			if (((j - home) & mask) >= ((j - i) & mask)) {
+				keys[i] = keys[j];
+				values[i] = values[j];
+				i = j;
+			}
+		}
+		keys[i] = FREE;
+		size--;
+		return true;
+	}
+
+	/**
+	 * Internal iteration over all entries in no particular order, without allocation.
+	 */
+	public void forEach(EntryConsumer action) {
+		if (hasFreeKey)
+			action.accept(FREE, freeKeyValue);
+		int[] keys = this.keys;
+		int[] values = this.values;
+		for (int i = 0; i < keys.length; i++)
+			if (keys[i] != FREE)
+				action.accept(keys[i], values[i]);
+	}
+
+	/**
+	 * Sum of all values.
+	 */
+	public int sumValues() {
+		int sum = hasFreeKey ? freeKeyValue : 0;
+		int[] keys = this.keys;
+		int[] values = this.values;
+		for (int i = 0; i < keys.length; i++)
+			if (keys[i] != FREE)
+				sum += values[i];
+		return sum;
+	}
+
+	/**
+	 * Approximate number of bytes used to store the entries, including free slots.
+	 */
+	public long byteSize() {
+		return keys.length * 8L;
+	}
+
+	/**
+	 * Slot of {@code key} or the free slot where it would be inserted.
+	 */
+	private int slot(int key) {
+		int[] keys = this.keys;
+		int mask = keys.length - 1;
+		int i = IntSet.hash(key) & mask;
+		while (keys[i] != FREE && keys[i] != key)
+			i = (i + 1) & mask;
+		return i;
+	}
+
+	private void allocate(int capacity) {
+		if (capacity > IntSet.MAX_CAPACITY)
+			throw new IllegalStateException("Map is full");
+		int[] oldKeys = keys;
+		int[] oldValues = values;
+		keys = new int[capacity];
+		values = new int[capacity];
+		threshold = Math.min(capacity - 1, (int)(capacity * loadFactor));
+		if (oldKeys == null)
+			return;
+		for (int i = 0; i < oldKeys.length; i++)
+			if (oldKeys[i] != FREE) {
+				int j = slot(oldKeys[i]);
+				keys[j] = oldKeys[i];
+				values[j] = oldValues[i];
+			}
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder("{");
+		forEach((key, value) -> {
+			if (sb.length() > 1)
+				sb.append(", ");
+			sb.append(key).append('=').append(value);
+		});
+		return sb.append('}').toString();
+	}
+}
@@ -1,13 +1,73 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.IntBinaryOperator;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
+
+import static java.lang.foreign.ValueLayout.JAVA_INT;
 
 public interface IntList {
 	public int size();
 	public void add(int value);
 	public int getInt(int index);
 
-	public class ViaArrayList extends ArrayList<Integer> implements IntList {
+	/**
+	 * Internal iteration over all elements in index order.
+	 */
+	public void forEachInt(IntConsumer action);
+
+	/**
+	 * Folds all elements in index order starting from {@code identity}.
+	 */
+	public default int reduce(int identity, IntBinaryOperator op) {
+		return reduce(0, size(), identity, op);
+	}
+
+	/**
+	 * Folds elements with indices in {@code [from, to)} starting from {@code identity}. The range is checked once.
+	 */
+	public int reduce(int from, int to, int identity, IntBinaryOperator op);
+
+	/**
+	 * Sum of elements with indices in {@code [from, to)}. The range is checked once.
+	 */
+	public int sum(int from, int to);
+
+	/**
+	 * Appends {@code len} values from {@code src} starting at {@code off}.
+	 */
+	public void addAll(int[] src, int off, int len);
+
+	/**
+	 * Copies {@code len} elements starting from {@code index} into {@code dst} at {@code off}.
+	 */
+	public void getInts(int index, int[] dst, int off, int len);
+
+	/**
+	 * Read-only view of the current contents with position 0 and limit {@link #size()}.
+	 * The view is not updated when the list grows.
+	 */
+	public IntBuffer asIntBuffer();
+
+	/**
+	 * Approximate number of bytes used to store the elements, including unused capacity.
+	 */
+	public long byteSize();
+
+	public class ViaArrayList extends ArrayList<Integer> implements MutableIntList {
 		public void add(int value) {
 			super.add(value);
 		}
@@ -15,9 +75,76 @@ public interface IntList {
 		public int getInt(int index) {
 			return get(index);
 		}
+
+		public void insert(int index, int value) {
+			super.add(index, value);
+		}
+
+		public int removeAt(int index) {
+			return remove(index);
+		}
+
+		public void forEachInt(IntConsumer action) {
+			forEach(value -> action.accept(value));
+		}
+
+		public int reduce(int from, int to, int identity, IntBinaryOperator op) {
+			checkRange(from, to, size());
+			int result = identity;
+			for (int i = from; i < to; i++)
+				result = op.applyAsInt(result, get(i));
+			return result;
+		}
+
+		public int sum(int from, int to) {
+			checkRange(from, to, size());
+			int sum = 0;
+			for (int i = from; i < to; i++)
+				sum += get(i);
+			return sum;
+		}
+
+		public void addAll(int[] src, int off, int len) {
+			Objects.checkFromIndexSize(off, len, src.length);
+			ensureCapacity(size() + len);
+			for (int i = off, n = off + len; i < n; i++)
+				super.add(src[i]);
+		}
+
+		public void getInts(int index, int[] dst, int off, int len) {
+			Objects.checkFromIndexSize(index, len, size());
+			Objects.checkFromIndexSize(off, len, dst.length);
+			for (int i = 0; i < len; i++)
+				dst[off + i] = get(index + i);
+		}
+
+		/**
+		 * Boxed values cannot be viewed in place, so this one copies.
+		 */
+		public IntBuffer asIntBuffer() {
+			int[] array = new int[size()];
+			getInts(0, array, 0, array.length);
+			return IntBuffer.wrap(array).asReadOnlyBuffer();
+		}
+
+		/**
+		 * Re-allocates all boxed values in index order, so that they are laid out sequentially in heap again.
+		 */
+		@SuppressWarnings("removal")
+		public void compact() {
+			for (int i = 0, n = size(); i < n; i++)
+				set(i, new Integer(get(i))); // valueOf could return the same cached box
+		}
+
+		/**
+		 * Assumes compressed references and 16-byte {@code Integer} objects that are not shared.
+		 */
+		public long byteSize() {
+			return size() * 20L;
+		}
 	}
 
-	public class ViaJavaArray implements IntList {
+	public class ViaJavaArray implements MutableIntList {
 		private int[] array = new int[8];
 		private int size;
 
@@ -31,11 +158,801 @@ public interface IntList {
 			array[size++] = value;
 		}
 
+		public void addAll(int[] src, int off, int len) {
+			Objects.checkFromIndexSize(off, len, src.length);
+			if (size + len > array.length)
+				array = Arrays.copyOf(array, Math.max(array.length * 2, size + len));
+			System.arraycopy(src, off, array, size, len);
+			size += len;
+		}
+
+		public void insert(int index, int value) {
+			if (index < 0 || index > size)
+				throw new IndexOutOfBoundsException();
+			if (size >= array.length)
+				array = Arrays.copyOf(array, array.length * 2);
+			System.arraycopy(array, index, array, index + 1, size - index);
+			array[index] = value;
+			size++;
+		}
+
+		public int removeAt(int index) {
+			int value = getInt(index);
+			System.arraycopy(array, index + 1, array, index, size - index - 1);
+			size--;
+			return value;
+		}
+
+		public void getInts(int index, int[] dst, int off, int len) {
+			Objects.checkFromIndexSize(index, len, size);
+			System.arraycopy(array, index, dst, off, len);
+		}
+
+		public IntBuffer asIntBuffer() {
+			return IntBuffer.wrap(array, 0, size).asReadOnlyBuffer();
+		}
+
+		public long byteSize() {
+			return array.length * 4L;
+		}
+
+		int[] array() {
+			return array;
+		}
+
 		public int getInt(int index) {
 			if (index < 0 || index >= size)
 				throw new IndexOutOfBoundsException();
 			return array[index];
 		}
+
+		public void forEachInt(IntConsumer action) {
+			int[] array = this.array;
+			for (int i = 0, n = size; i < n; i++)
+				action.accept(array[i]);
+		}
+
+		public int reduce(int from, int to, int identity, IntBinaryOperator op) {
+			checkRange(from, to, size);
+			int[] array = this.array;
+			int result = identity;
+			for (int i = from; i < to; i++)
+				result = op.applyAsInt(result, array[i]);
+			return result;
+		}
+
+		public int sum(int from, int to) {
+			checkRange(from, to, size);
+			int[] array = this.array;
+			int sum = 0;
+			for (int i = from; i < to; i++)
+				sum += array[i];
+			return sum;
+		}
+	}
+
+	/**
+	 * Use fixed-size {@code int[]} chunks, so that growth never copies elements, only the chunk directory.
+	 */
+	public class ViaChunkedArray implements IntList {
+		private static final int CHUNK_SHIFT = 12; // 4K ints == 16 KB per chunk
+		private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+		private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+		private int[][] chunks = new int[8][];
+		private int size;
+
+		public int size() {
+			return size;
+		}
+
+		public void add(int value) {
+			int c = size >>> CHUNK_SHIFT;
+			if ((size & CHUNK_MASK) == 0)
+				addChunk(c);
+			chunks[c][size & CHUNK_MASK] = value;
+			size++;
+		}
+
+		public int getInt(int index) {
+			if (index < 0 || index >= size)
+				throw new IndexOutOfBoundsException();
+			return chunks[index >>> CHUNK_SHIFT][index & CHUNK_MASK];
+		}
+
+		public void forEachInt(IntConsumer action) {
+			for (int c = 0; c << CHUNK_SHIFT < size; c++) {
+				int[] chunk = chunks[c];
+				for (int i = 0, n = Math.min(CHUNK_SIZE, size - (c << CHUNK_SHIFT)); i < n; i++)
+					action.accept(chunk[i]);
+			}
+		}
+
+		public int reduce(int from, int to, int identity, IntBinaryOperator op) {
+			checkRange(from, to, size);
+			int result = identity;
+			while (from < to) {
+				int[] chunk = chunks[from >>> CHUNK_SHIFT];
+				int i = from & CHUNK_MASK;
+				int n = i + Math.min(to - from, CHUNK_SIZE - i);
+				from += n - i;
+				for (; i < n; i++)
+					result = op.applyAsInt(result, chunk[i]);
+			}
+			return result;
+		}
+
+		public int sum(int from, int to) {
+			checkRange(from, to, size);
+			int sum = 0;
+			while (from < to) {
+				int[] chunk = chunks[from >>> CHUNK_SHIFT];
+				int i = from & CHUNK_MASK;
+				int n = i + Math.min(to - from, CHUNK_SIZE - i);
+				from += n - i;
+				for (; i < n; i++)
+					sum += chunk[i];
+			}
+			return sum;
+		}
+
+		public void addAll(int[] src, int off, int len) {
+			Objects.checkFromIndexSize(off, len, src.length);
+			while (len > 0) {
+				int i = size & CHUNK_MASK;
+				if (i == 0)
+					addChunk(size >>> CHUNK_SHIFT);
+				int n = Math.min(len, CHUNK_SIZE - i);
+				System.arraycopy(src, off, chunks[size >>> CHUNK_SHIFT], i, n);
+				size += n;
+				off += n;
+				len -= n;
+			}
+		}
+
+		public void getInts(int index, int[] dst, int off, int len) {
+			Objects.checkFromIndexSize(index, len, size);
+			while (len > 0) {
+				int i = index & CHUNK_MASK;
+				int n = Math.min(len, CHUNK_SIZE - i);
+				System.arraycopy(chunks[index >>> CHUNK_SHIFT], i, dst, off, n);
+				index += n;
+				off += n;
+				len -= n;
+			}
+		}
+
+		/**
+		 * Chunks are not contiguous, so this one copies unless everything fits into the first chunk.
+		 */
+		public IntBuffer asIntBuffer() {
+			if (size <= CHUNK_SIZE)
+				return IntBuffer.wrap(size == 0 ? new int[0] : chunks[0], 0, size).asReadOnlyBuffer();
+			int[] array = new int[size];
+			getInts(0, array, 0, size);
+			return IntBuffer.wrap(array).asReadOnlyBuffer();
+		}
+
+		public long byteSize() {
+			return chunks.length * 4L + (long)((size + CHUNK_MASK) >>> CHUNK_SHIFT) * CHUNK_SIZE * 4;
+		}
+
+		private void addChunk(int c) {
+			if (c >= chunks.length)
+				chunks = Arrays.copyOf(chunks, chunks.length * 2);
+			chunks[c] = new int[CHUNK_SIZE];
+		}
+	}
+
+	/**
+	 * Use a doubly-linked list of nodes with {@code int[]} blocks of up to 128 elements. Inserts and removals move
+	 * elements within one block only: a full block is split in halves, and a block that gets less than half full
+	 * absorbs the next one when they fit together. Iteration runs over whole blocks like over an array, and
+	 * {@link #getInt(int)} walks from the last node it found, so ascending access visits each node once.
+	 */
+	public class ViaUnrolledList implements MutableIntList {
+		private static final int NODE_CAPACITY = 128;
+
+		static class Node {
+			final int[] values = new int[NODE_CAPACITY];
+			int size;
+			Node prev;
+			Node next;
+		}
+
+		/**
+		 * Last found node and the index of its first element. It is replaced as a whole,
+		 * so that readers in different threads never see the node of one cursor with the start of another.
+		 */
+		static class Cursor {
+			final Node node;
+			final int start;
+
+			Cursor(Node node, int start) {
+				this.node = node;
+				this.start = start;
+			}
+		}
+
+		private final Node head = new Node();
+		private Node tail = head;
+		private int nodes = 1;
+		private int size;
+		private Cursor cursor = new Cursor(head, 0);
+
+		public int size() {
+			return size;
+		}
+
+		public void add(int value) {
+			Node tail = this.tail;
+			if (tail.size == NODE_CAPACITY)
+				tail = linkAfter(tail);
+			tail.values[tail.size++] = value;
+			size++;
+		}
+
+		public int getInt(int index) {
+			if (index < 0 || index >= size)
+				throw new IndexOutOfBoundsException();
+			Cursor c = find(index);
+			return c.node.values[index - c.start];
+		}
+
+		public void insert(int index, int value) {
+			if (index < 0 || index > size)
+				throw new IndexOutOfBoundsException();
+			if (index == size) {
+				add(value);
+				return;
+			}
+			Cursor c = find(index);
+			Node node = c.node;
+			int start = c.start;
+			int i = index - start;
+			if (node.size == NODE_CAPACITY) {
+				Node right = linkAfter(node);
+				int half = NODE_CAPACITY / 2;
+				System.arraycopy(node.values, half, right.values, 0, NODE_CAPACITY - half);
+				right.size = NODE_CAPACITY - half;
+				node.size = half;
+				if (i > half) {
+					node = right;
+					start += half;
+					i -= half;
+				}
+			}
+			System.arraycopy(node.values, i, node.values, i + 1, node.size - i);
+			node.values[i] = value;
+			node.size++;
+			size++;
+			cursor = new Cursor(node, start);
+		}
+
+		public int removeAt(int index) {
+			if (index < 0 || index >= size)
+				throw new IndexOutOfBoundsException();
+			Cursor c = find(index);
+			Node node = c.node;
+			int i = index - c.start;
+			int value = node.values[i];
+			System.arraycopy(node.values, i + 1, node.values, i, node.size - i - 1);
+			node.size--;
+			size--;
+			Node next = node.next;
+			if (next != null && node.size < NODE_CAPACITY / 2 && node.size + next.size <= NODE_CAPACITY) {
+				System.arraycopy(next.values, 0, node.values, node.size, next.size);
+				node.size += next.size;
+				unlink(next);
+			}
+			if (node.size == 0 && node != head) {
+				unlink(node);
+				cursor = new Cursor(head, 0);
+			} else
+				cursor = new Cursor(node, c.start);
+			return value;
+		}
+
+		public void forEachInt(IntConsumer action) {
+			for (Node node = head; node != null; node = node.next) {
+				int[] values = node.values;
+				for (int i = 0, n = node.size; i < n; i++)
+					action.accept(values[i]);
+			}
+		}
+
+		public int reduce(int from, int to, int identity, IntBinaryOperator op) {
+			checkRange(from, to, size);
+			int result = identity;
+			if (from == to)
+				return result;
+			Cursor c = find(from);
+			Node node = c.node;
+			int i = from - c.start;
+			while (from < to) {
+				int[] values = node.values;
+				int n = i + Math.min(to - from, node.size - i);
+				from += n - i;
+				for (; i < n; i++)
+					result = op.applyAsInt(result, values[i]);
+				node = node.next;
+				i = 0;
+			}
+			return result;
+		}
+
+		public int sum(int from, int to) {
+			checkRange(from, to, size);
+			int sum = 0;
+			if (from == to)
+				return sum;
+			Cursor c = find(from);
+			Node node = c.node;
+			int i = from - c.start;
+			while (from < to) {
+				int[] values = node.values;
+				int n = i + Math.min(to - from, node.size - i);
+				from += n - i;
+				for (; i < n; i++)
+					sum += values[i];
+				node = node.next;
+				i = 0;
+			}
+			return sum;
+		}
+
+		public void addAll(int[] src, int off, int len) {
+			Objects.checkFromIndexSize(off, len, src.length);
+			while (len > 0) {
+				Node tail = this.tail;
+				if (tail.size == NODE_CAPACITY)
+					tail = linkAfter(tail);
+				int n = Math.min(len, NODE_CAPACITY - tail.size);
+				System.arraycopy(src, off, tail.values, tail.size, n);
+				tail.size += n;
+				size += n;
+				off += n;
+				len -= n;
+			}
+		}
+
+		public void getInts(int index, int[] dst, int off, int len) {
+			Objects.checkFromIndexSize(index, len, size);
+			Objects.checkFromIndexSize(off, len, dst.length);
+			if (len == 0)
+				return;
+			Cursor c = find(index);
+			Node node = c.node;
+			int i = index - c.start;
+			while (len > 0) {
+				int n = Math.min(len, node.size - i);
+				System.arraycopy(node.values, i, dst, off, n);
+				off += n;
+				len -= n;
+				node = node.next;
+				i = 0;
+			}
+		}
+
+		/**
+		 * Blocks are not contiguous, so this one copies.
+		 */
+		public IntBuffer asIntBuffer() {
+			int[] array = new int[size];
+			getInts(0, array, 0, size);
+			return IntBuffer.wrap(array).asReadOnlyBuffer();
+		}
+
+		/**
+		 * Assumes compressed references: a 16-byte array header and a 32-byte node per block.
+		 */
+		public long byteSize() {
+			return nodes * (NODE_CAPACITY * 4L + 48);
+		}
+
+		/**
+		 * Node that holds {@code index}, starting from the cursor when it is not past {@code index}.
+		 */
+		private Cursor find(int index) {
+			Cursor c = cursor;
+			Node node;
+			int start;
+			if (c.start <= index) {
+				node = c.node;
+				start = c.start;
+			} else {
+				node = head;
+				start = 0;
+			}
+			while (index >= start + node.size && node.next != null) {
+				start += node.size;
+				node = node.next;
+			}
+			if (node != c.node)
+				cursor = c = new Cursor(node, start);
+			return c;
+		}
+
+		private Node linkAfter(Node node) {
+			Node added = new Node();
+			added.prev = node;
+			added.next = node.next;
+			if (node.next != null)
+				node.next.prev = added;
+			else
+				tail = added;
+			node.next = added;
+			nodes++;
+			return added;
+		}
+
+		private void unlink(Node node) {
+			node.prev.next = node.next;
+			if (node.next != null)
+				node.next.prev = node.prev;
+			else
+				tail = node.prev;
+			nodes--;
+		}
+	}
+
+	/**
+	 * Use bit-packed blocks of 128 elements. Each block is stored frame-of-reference style as the block minimum
+	 * and the differences from it in as many bits as the largest one needs. A block with width {@code w} takes
+	 * exactly {@code 2 * w} longs, so {@link #getInt(int)} finds any element with a bit of offset arithmetic,
+	 * while bulk operations decode the elements of each block in place, one after another, without a scratch buffer.
+	 * The last incomplete block is kept unpacked.
+	 */
+	public class ViaBitPacked implements IntList {
+		private static final int BLOCK_SHIFT = 7;
+		private static final int BLOCK_SIZE = 1 << BLOCK_SHIFT;
+		private static final int BLOCK_MASK = BLOCK_SIZE - 1;
+
+		private long[] words = new long[64];
+		private int wordCount;
+		private int[] blockStart = new int[8]; // index in words
+		private int[] blockBase = new int[8];
+		private byte[] blockWidth = new byte[8];
+		private final int[] tail = new int[BLOCK_SIZE];
+		private int size;
+
+		public int size() {
+			return size;
+		}
+
+		public void add(int value) {
+			tail[size & BLOCK_MASK] = value;
+			size++;
+			if ((size & BLOCK_MASK) == 0)
+				pack((size >>> BLOCK_SHIFT) - 1);
+		}
+
+		public int getInt(int index) {
+			if (index < 0 || index >= size)
+				throw new IndexOutOfBoundsException();
+			int b = index >>> BLOCK_SHIFT;
+			if (b == size >>> BLOCK_SHIFT)
+				return tail[index & BLOCK_MASK];
+			int w = blockWidth[b];
+			return blockBase[b] + bits(words, bitPos(b, index & BLOCK_MASK), w);
+		}
+
+		public void forEachInt(IntConsumer action) {
+			long[] words = this.words;
+			int packed = size >>> BLOCK_SHIFT;
+			for (int b = 0; b < packed; b++) {
+				int base = blockBase[b];
+				int w = blockWidth[b];
+				long bitPos = bitPos(b, 0);
+				for (int i = 0; i < BLOCK_SIZE; i++, bitPos += w)
+					action.accept(base + bits(words, bitPos, w));
+			}
+			for (int i = 0, n = size & BLOCK_MASK; i < n; i++)
+				action.accept(tail[i]);
+		}
+
+		public int reduce(int from, int to, int identity, IntBinaryOperator op) {
+			checkRange(from, to, size);
+			long[] words = this.words;
+			int result = identity;
+			while (from < to) {
+				int b = from >>> BLOCK_SHIFT;
+				int i = from & BLOCK_MASK;
+				int n = i + Math.min(to - from, BLOCK_SIZE - i);
+				from += n - i;
+				if (b == size >>> BLOCK_SHIFT) {
+					for (; i < n; i++)
+						result = op.applyAsInt(result, tail[i]);
+				} else {
+					int base = blockBase[b];
+					int w = blockWidth[b];
+					for (long bitPos = bitPos(b, i); i < n; i++, bitPos += w)
+						result = op.applyAsInt(result, base + bits(words, bitPos, w));
+				}
+			}
+			return result;
+		}
+
+		public int sum(int from, int to) {
+			checkRange(from, to, size);
+			long[] words = this.words;
+			int sum = 0;
+			while (from < to) {
+				int b = from >>> BLOCK_SHIFT;
+				int i = from & BLOCK_MASK;
+				int n = i + Math.min(to - from, BLOCK_SIZE - i);
+				from += n - i;
+				if (b == size >>> BLOCK_SHIFT) {
+					for (; i < n; i++)
+						sum += tail[i];
+				} else {
+					int w = blockWidth[b];
+					sum += (n - i) * blockBase[b];
+					for (long bitPos = bitPos(b, i); i < n; i++, bitPos += w)
+						sum += bits(words, bitPos, w);
+				}
+			}
+			return sum;
+		}
+
+		public void addAll(int[] src, int off, int len) {
+			Objects.checkFromIndexSize(off, len, src.length);
+			while (len > 0) {
+				int i = size & BLOCK_MASK;
+				int n = Math.min(len, BLOCK_SIZE - i);
+				System.arraycopy(src, off, tail, i, n);
+				size += n;
+				off += n;
+				len -= n;
+				if ((size & BLOCK_MASK) == 0)
+					pack((size >>> BLOCK_SHIFT) - 1);
+			}
+		}
+
+		public void getInts(int index, int[] dst, int off, int len) {
+			Objects.checkFromIndexSize(index, len, size);
+			long[] words = this.words;
+			while (len > 0) {
+				int b = index >>> BLOCK_SHIFT;
+				int i = index & BLOCK_MASK;
+				int n = Math.min(len, BLOCK_SIZE - i);
+				if (b == size >>> BLOCK_SHIFT)
+					System.arraycopy(tail, i, dst, off, n);
+				else {
+					int base = blockBase[b];
+					int w = blockWidth[b];
+					long bitPos = bitPos(b, i);
+					for (int k = 0; k < n; k++, bitPos += w)
+						dst[off + k] = base + bits(words, bitPos, w);
+				}
+				index += n;
+				off += n;
+				len -= n;
+			}
+		}
+
+		/**
+		 * Packed elements cannot be viewed in place, so this one decodes a copy.
+		 */
+		public IntBuffer asIntBuffer() {
+			int[] array = new int[size];
+			getInts(0, array, 0, size);
+			return IntBuffer.wrap(array).asReadOnlyBuffer();
+		}
+
+		public long byteSize() {
+			return words.length * 8L + blockStart.length * 9L + BLOCK_SIZE * 4;
+		}
+
+		/**
+		 * Position in {@code words} of the first bit of element {@code i} of packed block {@code b}.
+		 */
+		private long bitPos(int b, int i) {
+			return ((long)blockStart[b] << 6) + i * blockWidth[b];
+		}
+
+		/**
+		 * Decodes {@code w} bits at {@code bitPos} in place, so that bulk operations need no scratch buffer
+		 * and readers in different threads share nothing they write.
+		 */
+		private static int bits(long[] words, long bitPos, int w) {
+			int word = (int)(bitPos >>> 6);
+			int shift = (int)bitPos & 63;
+			long bits = words[word] >>> shift;
+			if (shift + w > 64)
+				bits |= words[word + 1] << (64 - shift);
+			return (int)(bits & ((1L << w) - 1));
+		}
+
+		private void pack(int b) {
+			int min = tail[0];
+			int max = tail[0];
+			for (int i = 1; i < BLOCK_SIZE; i++) {
+				min = Math.min(min, tail[i]);
+				max = Math.max(max, tail[i]);
+			}
+			int w = 64 - Long.numberOfLeadingZeros((long)max - min);
+			if (b >= blockStart.length) {
+				int n = blockStart.length * 2;
+				blockStart = Arrays.copyOf(blockStart, n);
+				blockBase = Arrays.copyOf(blockBase, n);
+				blockWidth = Arrays.copyOf(blockWidth, n);
+			}
+			if (wordCount + 2 * w >= words.length) // keep a spare word, so that width 0 blocks can be read, too
+				words = Arrays.copyOf(words, Math.max(words.length * 2, wordCount + 2 * w + 1));
+			blockStart[b] = wordCount;
+			blockBase[b] = min;
+			blockWidth[b] = (byte)w;
+			for (int i = 0; i < BLOCK_SIZE; i++) {
+				long d = (long)tail[i] - min;
+				int bitPos = i * w;
+				int word = wordCount + (bitPos >>> 6);
+				int shift = bitPos & 63;
+				words[word] |= d << shift;
+				if (shift + w > 64)
+					words[word + 1] |= d >>> (64 - shift);
+			}
+			wordCount += 2 * w;
+		}
+	}
+
+	/**
+	 * Thread-safe list for appends concurrent with reads. Elements are kept in segments that double in size,
+	 * so a segment is never copied or replaced once allocated. An appender reserves its indices with
+	 * {@code reserved}, writes the values, and then publishes them by advancing the volatile {@code size}.
+	 * Readers never block and see a consistent prefix of {@link #size()} elements. Publication happens in index
+	 * order, so concurrent appenders wait for earlier reservations to be published. A single appender never waits.
+	 */
+	public class ViaConcurrentSegments implements IntList {
+		private static final int FIRST_SHIFT = 10; // first segment has 1K ints
+		private static final int FIRST_SIZE = 1 << FIRST_SHIFT;
+		private static final int MAX_SIZE = Integer.MAX_VALUE - FIRST_SIZE + 1;
+		private static final int PUBLISH_SPINS = 100;
+
+		private final AtomicReferenceArray<int[]> segments = new AtomicReferenceArray<int[]>(32 - FIRST_SHIFT);
+		private final AtomicInteger reserved = new AtomicInteger();
+		private final AtomicInteger size = new AtomicInteger();
+
+		public int size() {
+			return size.get();
+		}
+
+		public void add(int value) {
+			int index = reserve(1);
+			int k = segmentIndex(index);
+			segment(k)[segmentOffset(index, k)] = value;
+			publish(index, 1);
+		}
+
+		public int getInt(int index) {
+			if (index < 0 || index >= size.get())
+				throw new IndexOutOfBoundsException();
+			int k = segmentIndex(index);
+			return segments.get(k)[segmentOffset(index, k)];
+		}
+
+		public void forEachInt(IntConsumer action) {
+			int n = size.get();
+			for (int k = 0, start = 0; start < n; start += FIRST_SIZE << k, k++) {
+				int[] segment = segments.get(k);
+				for (int i = 0, m = Math.min(segment.length, n - start); i < m; i++)
+					action.accept(segment[i]);
+			}
+		}
+
+		public int reduce(int from, int to, int identity, IntBinaryOperator op) {
+			checkRange(from, to, size.get());
+			int result = identity;
+			while (from < to) {
+				int k = segmentIndex(from);
+				int[] segment = segments.get(k);
+				int i = segmentOffset(from, k);
+				int n = i + Math.min(to - from, segment.length - i);
+				from += n - i;
+				for (; i < n; i++)
+					result = op.applyAsInt(result, segment[i]);
+			}
+			return result;
+		}
+
+		public int sum(int from, int to) {
+			checkRange(from, to, size.get());
+			int sum = 0;
+			while (from < to) {
+				int k = segmentIndex(from);
+				int[] segment = segments.get(k);
+				int i = segmentOffset(from, k);
+				int n = i + Math.min(to - from, segment.length - i);
+				from += n - i;
+				for (; i < n; i++)
+					sum += segment[i];
+			}
+			return sum;
+		}
+
+		public void addAll(int[] src, int off, int len) {
+			Objects.checkFromIndexSize(off, len, src.length);
+			int start = reserve(len);
+			for (int index = start, end = start + len; index < end; ) {
+				int k = segmentIndex(index);
+				int[] segment = segment(k);
+				int i = segmentOffset(index, k);
+				int n = Math.min(end - index, segment.length - i);
+				System.arraycopy(src, off, segment, i, n);
+				index += n;
+				off += n;
+			}
+			publish(start, len);
+		}
+
+		public void getInts(int index, int[] dst, int off, int len) {
+			Objects.checkFromIndexSize(index, len, size.get());
+			while (len > 0) {
+				int k = segmentIndex(index);
+				int[] segment = segments.get(k);
+				int i = segmentOffset(index, k);
+				int n = Math.min(len, segment.length - i);
+				System.arraycopy(segment, i, dst, off, n);
+				index += n;
+				off += n;
+				len -= n;
+			}
+		}
+
+		/**
+		 * Segments are not contiguous, so this one copies the currently published prefix.
+		 */
+		public IntBuffer asIntBuffer() {
+			int[] array = new int[size.get()];
+			getInts(0, array, 0, array.length);
+			return IntBuffer.wrap(array).asReadOnlyBuffer();
+		}
+
+		public long byteSize() {
+			long bytes = 0;
+			for (int k = 0; k < segments.length(); k++) {
+				int[] segment = segments.get(k);
+				if (segment != null)
+					bytes += segment.length * 4L;
+			}
+			return bytes;
+		}
+
+		private static int segmentIndex(int index) {
+			return 31 - Integer.numberOfLeadingZeros(index + FIRST_SIZE) - FIRST_SHIFT;
+		}
+
+		private static int segmentOffset(int index, int k) {
+			return index + FIRST_SIZE - (FIRST_SIZE << k);
+		}
+
+		private int reserve(int len) {
+			int start;
+			do {
+				start = reserved.get();
+				if (len > MAX_SIZE - start)
+					throw new IllegalStateException("List is full");
+			} while (!reserved.compareAndSet(start, start + len));
+			return start;
+		}
+
+		private int[] segment(int k) {
+			int[] segment = segments.get(k);
+			if (segment == null) {
+				segments.compareAndSet(k, null, new int[FIRST_SIZE << k]);
+				segment = segments.get(k);
+			}
+			return segment;
+		}
+
+		private void publish(int start, int len) {
+			for (int spins = 0; !size.compareAndSet(start, start + len); spins++) {
+				if (spins < PUBLISH_SPINS)
+					Thread.onSpinWait();
+				else
+					Thread.yield(); // the earlier appender may be descheduled
+			}
+		}
 	}
 
 	/**
@@ -43,6 +960,7 @@ public interface IntList {
 	 */
 	public class ViaByteBuffer1 implements IntList {
 		private ByteBuffer buf = ByteBuffer.allocateDirect(32);
+		private IntBuffer ints = buf.asIntBuffer(); // bulk view over the same memory, same byte order
 		private int size;
 
 		public int size() {
@@ -50,21 +968,76 @@ public interface IntList {
 		}
 
 		public void add(int value) {
-			if (buf.position() >= buf.capacity()) {
-				ByteBuffer larger = ByteBuffer.allocateDirect(buf.capacity() * 2);
-				buf.rewind();
-				larger.put(buf);
-				buf = larger;
-			}
+			if (buf.position() >= buf.capacity())
+				grow(size + 1);
 			buf.putInt(value);
 			size++;
 		}
 
+		public void addAll(int[] src, int off, int len) {
+			Objects.checkFromIndexSize(off, len, src.length);
+			if (size + len > ints.capacity())
+				grow(size + len);
+			ints.put(size, src, off, len);
+			size += len;
+			buf.position(size * 4);
+		}
+
+		public void getInts(int index, int[] dst, int off, int len) {
+			Objects.checkFromIndexSize(index, len, size);
+			ints.get(index, dst, off, len);
+		}
+
+		public IntBuffer asIntBuffer() {
+			return ints.slice(0, size).asReadOnlyBuffer();
+		}
+
+		public long byteSize() {
+			return buf.capacity();
+		}
+
+		ByteBuffer buffer() {
+			return buf;
+		}
+
+		private void grow(int minSize) {
+			ByteBuffer larger = ByteBuffer.allocateDirect(Math.max(buf.capacity() * 2, minSize * 4));
+			IntBuffer largerInts = larger.asIntBuffer();
+			largerInts.put(0, ints, 0, size);
+			larger.position(size * 4);
+			buf = larger;
+			ints = largerInts;
+		}
+
 		public int getInt(int index) {
 			if (index < 0 || index >= size)
 				throw new IndexOutOfBoundsException();
 			return buf.getInt(index * 4);
 		}
+
+		public void forEachInt(IntConsumer action) {
+			ByteBuffer buf = this.buf;
+			for (int i = 0, n = size; i < n; i++)
+				action.accept(buf.getInt(i * 4));
+		}
+
+		public int reduce(int from, int to, int identity, IntBinaryOperator op) {
+			checkRange(from, to, size);
+			ByteBuffer buf = this.buf;
+			int result = identity;
+			for (int i = from; i < to; i++)
+				result = op.applyAsInt(result, buf.getInt(i * 4));
+			return result;
+		}
+
+		public int sum(int from, int to) {
+			checkRange(from, to, size);
+			ByteBuffer buf = this.buf;
+			int sum = 0;
+			for (int i = from; i < to; i++)
+				sum += buf.getInt(i * 4);
+			return sum;
+		}
 	}
 
 	/**
@@ -72,6 +1045,7 @@ public interface IntList {
 	 */
 	public class ViaByteBuffer2 implements IntList {
 		private ByteBuffer buf = allocate(32);
+		private IntBuffer ints = buf.asIntBuffer(); // bulk view over the same memory, same byte order
 		private int size;
 
 		private static ByteBuffer allocate(int size) {
@@ -85,21 +1059,76 @@ public interface IntList {
 		}
 
 		public void add(int value) {
-			if (buf.position() >= buf.capacity()) {
-				ByteBuffer larger = allocate(buf.capacity() * 2);
-				buf.rewind();
-				larger.put(buf);
-				buf = larger;
-			}
+			if (buf.position() >= buf.capacity())
+				grow(size + 1);
 			buf.putInt(value);
 			size++;
 		}
 
+		public void addAll(int[] src, int off, int len) {
+			Objects.checkFromIndexSize(off, len, src.length);
+			if (size + len > ints.capacity())
+				grow(size + len);
+			ints.put(size, src, off, len);
+			size += len;
+			buf.position(size * 4);
+		}
+
+		public void getInts(int index, int[] dst, int off, int len) {
+			Objects.checkFromIndexSize(index, len, size);
+			ints.get(index, dst, off, len);
+		}
+
+		public IntBuffer asIntBuffer() {
+			return ints.slice(0, size).asReadOnlyBuffer();
+		}
+
+		public long byteSize() {
+			return buf.capacity();
+		}
+
+		ByteBuffer buffer() {
+			return buf;
+		}
+
+		private void grow(int minSize) {
+			ByteBuffer larger = allocate(Math.max(buf.capacity() * 2, minSize * 4));
+			IntBuffer largerInts = larger.asIntBuffer();
+			largerInts.put(0, ints, 0, size);
+			larger.position(size * 4);
+			buf = larger;
+			ints = largerInts;
+		}
+
 		public int getInt(int index) {
 			if (index < 0 || index >= size)
 				throw new IndexOutOfBoundsException();
 			return buf.getInt(index * 4);
 		}
+
+		public void forEachInt(IntConsumer action) {
+			ByteBuffer buf = this.buf;
+			for (int i = 0, n = size; i < n; i++)
+				action.accept(buf.getInt(i * 4));
+		}
+
+		public int reduce(int from, int to, int identity, IntBinaryOperator op) {
+			checkRange(from, to, size);
+			ByteBuffer buf = this.buf;
+			int result = identity;
+			for (int i = from; i < to; i++)
+				result = op.applyAsInt(result, buf.getInt(i * 4));
+			return result;
+		}
+
+		public int sum(int from, int to) {
+			checkRange(from, to, size);
+			ByteBuffer buf = this.buf;
+			int sum = 0;
+			for (int i = from; i < to; i++)
+				sum += buf.getInt(i * 4);
+			return sum;
+		}
 	}
 
 	/**
@@ -107,6 +1136,7 @@ public interface IntList {
 	 */
 	public class ViaByteBuffer3 implements IntList {
 		private ByteBuffer buf = allocate(32);
+		private IntBuffer ints = buf.asIntBuffer(); // bulk view over the same memory, same byte order
 		private int size;
 
 		private static ByteBuffer allocate(int size) {
@@ -120,20 +1150,453 @@ public interface IntList {
 		}
 
 		public void add(int value) {
-			if (buf.position() >= buf.capacity()) {
-				ByteBuffer larger = allocate(buf.capacity() * 2);
-				buf.rewind();
-				larger.put(buf);
-				buf = larger;
-			}
+			if (buf.position() >= buf.capacity())
+				grow(size + 1);
 			buf.putInt(value);
 			size++;
 		}
 
+		public void addAll(int[] src, int off, int len) {
+			Objects.checkFromIndexSize(off, len, src.length);
+			if (size + len > ints.capacity())
+				grow(size + len);
+			ints.put(size, src, off, len);
+			size += len;
+			buf.position(size * 4);
+		}
+
+		public void getInts(int index, int[] dst, int off, int len) {
+			Objects.checkFromIndexSize(index, len, size);
+			ints.get(index, dst, off, len);
+		}
+
+		public IntBuffer asIntBuffer() {
+			return ints.slice(0, size).asReadOnlyBuffer();
+		}
+
+		public long byteSize() {
+			return buf.capacity();
+		}
+
+		ByteBuffer buffer() {
+			return buf;
+		}
+
+		private void grow(int minSize) {
+			ByteBuffer larger = allocate(Math.max(buf.capacity() * 2, minSize * 4));
+			IntBuffer largerInts = larger.asIntBuffer();
+			largerInts.put(0, ints, 0, size);
+			larger.position(size * 4);
+			buf = larger;
+			ints = largerInts;
+		}
+
 		public int getInt(int index) {
 			if (index < 0 || index >= size)
 				throw new IndexOutOfBoundsException();
 			return buf.getInt(index * 4);
 		}
+
+		public void forEachInt(IntConsumer action) {
+			ByteBuffer buf = this.buf;
+			for (int i = 0, n = size; i < n; i++)
+				action.accept(buf.getInt(i * 4));
+		}
+
+		public int reduce(int from, int to, int identity, IntBinaryOperator op) {
+			checkRange(from, to, size);
+			ByteBuffer buf = this.buf;
+			int result = identity;
+			for (int i = from; i < to; i++)
+				result = op.applyAsInt(result, buf.getInt(i * 4));
+			return result;
+		}
+
+		public int sum(int from, int to) {
+			checkRange(from, to, size);
+			ByteBuffer buf = this.buf;
+			int sum = 0;
+			for (int i = from; i < to; i++)
+				sum += buf.getInt(i * 4);
+			return sum;
+		}
+	}
+
+	/**
+	 * Use off-heap memory segment, native byte order. Byte size is a {@code long}, so the list can hold
+	 * up to {@code Integer.MAX_VALUE} elements. Each segment is allocated in its own arena that is closed as
+	 * soon as the segment is outgrown, and {@link #close()} frees the memory without waiting for GC.
+	 */
+	public class ViaMemorySegment implements MutableIntList, AutoCloseable {
+		private final Supplier<Arena> arenaFactory;
+		private Arena arena;
+		private MemorySegment segment;
+		private int size;
+
+		/**
+		 * Shared arena, so that the list can be filled in one thread and read in others.
+		 */
+		public ViaMemorySegment() {
+			this(Arena::ofShared);
+		}
+
+		/**
+		 * Use {@code Arena::ofConfined} for access from the creating thread only.
+		 */
+		public ViaMemorySegment(Supplier<Arena> arenaFactory) {
+			this.arenaFactory = arenaFactory;
+			arena = arenaFactory.get();
+			segment = arena.allocate(32, JAVA_INT.byteAlignment());
+		}
+
+		public int size() {
+			return size;
+		}
+
+		public void add(int value) {
+			if (size * 4L >= segment.byteSize())
+				grow(size + 1L);
+			segment.setAtIndex(JAVA_INT, size, value);
+			size++;
+		}
+
+		public int getInt(int index) {
+			if (index < 0 || index >= size)
+				throw new IndexOutOfBoundsException();
+			return segment.getAtIndex(JAVA_INT, index);
+		}
+
+		public void insert(int index, int value) {
+			if (index < 0 || index > size)
+				throw new IndexOutOfBoundsException();
+			if (size * 4L >= segment.byteSize())
+				grow(size + 1L);
+			MemorySegment.copy(segment, index * 4L, segment, (index + 1) * 4L, (size - index) * 4L);
+			segment.setAtIndex(JAVA_INT, index, value);
+			size++;
+		}
+
+		public int removeAt(int index) {
+			int value = getInt(index);
+			MemorySegment.copy(segment, (index + 1) * 4L, segment, index * 4L, (size - index - 1) * 4L);
+			size--;
+			return value;
+		}
+
+		public void forEachInt(IntConsumer action) {
+			MemorySegment segment = this.segment;
+			for (int i = 0, n = size; i < n; i++)
+				action.accept(segment.getAtIndex(JAVA_INT, i));
+		}
+
+		public int reduce(int from, int to, int identity, IntBinaryOperator op) {
+			checkRange(from, to, size);
+			MemorySegment segment = this.segment;
+			int result = identity;
+			for (int i = from; i < to; i++)
+				result = op.applyAsInt(result, segment.getAtIndex(JAVA_INT, i));
+			return result;
+		}
+
+		public int sum(int from, int to) {
+			checkRange(from, to, size);
+			MemorySegment segment = this.segment;
+			int sum = 0;
+			for (int i = from; i < to; i++)
+				sum += segment.getAtIndex(JAVA_INT, i);
+			return sum;
+		}
+
+		public void addAll(int[] src, int off, int len) {
+			Objects.checkFromIndexSize(off, len, src.length);
+			if (size + (long)len > Integer.MAX_VALUE)
+				throw new IllegalStateException("List is full");
+			if ((size + (long)len) * 4 > segment.byteSize())
+				grow(size + (long)len);
+			MemorySegment.copy(src, off, segment, JAVA_INT, size * 4L, len);
+			size += len;
+		}
+
+		public void getInts(int index, int[] dst, int off, int len) {
+			Objects.checkFromIndexSize(index, len, size);
+			MemorySegment.copy(segment, JAVA_INT, index * 4L, dst, off, len);
+		}
+
+		/**
+		 * Works only while the list is smaller than 2 GB.
+		 */
+		public IntBuffer asIntBuffer() {
+			return segment.asSlice(0, size * 4L).asByteBuffer().order(ByteOrder.nativeOrder())
+					.asIntBuffer().asReadOnlyBuffer();
+		}
+
+		public long byteSize() {
+			return segment.byteSize();
+		}
+
+		MemorySegment segment() {
+			return segment;
+		}
+
+		public void close() {
+			arena.close();
+		}
+
+		private void grow(long minSize) {
+			if (minSize > Integer.MAX_VALUE)
+				throw new IllegalStateException("List is full");
+			long capacity = Math.min(Math.max(segment.byteSize() * 2, minSize * 4), Integer.MAX_VALUE * 4L);
+			Arena largerArena = arenaFactory.get();
+			MemorySegment larger = largerArena.allocate(capacity, JAVA_INT.byteAlignment());
+			MemorySegment.copy(segment, 0, larger, 0, size * 4L);
+			arena.close();
+			arena = largerArena;
+			segment = larger;
+		}
+	}
+
+	/**
+	 * Use memory-mapped file, native byte order. The file is a page-sized header with the element count followed
+	 * by the ints themselves, so an existing file is reopened by mapping it without parsing anything. It grows by
+	 * mapping one more fixed-size region, and the regions that are already mapped are never copied or remapped.
+	 */
+	public class ViaMappedFile implements IntList, AutoCloseable {
+		private static final int MAGIC = 0x494e544c; // "INTL"
+		private static final int HEADER_BYTES = 4096; // keeps regions page-aligned
+		private static final int MAGIC_OFFSET = 0;
+		private static final int SIZE_OFFSET = 4;
+		private static final int TAG_OFFSET = 8;
+
+		private static final int REGION_SHIFT = 24; // 16M ints == 64 MB per region
+		private static final int REGION_INTS = 1 << REGION_SHIFT;
+		private static final int REGION_MASK = REGION_INTS - 1;
+
+		private final FileChannel channel;
+		private final boolean readOnly;
+		private final boolean view; // shares the channel of another list, which owns and closes it
+		private final MappedByteBuffer header;
+		private IntBuffer[] regions;
+		private int size;
+
+		/**
+		 * Creates a list in a new temporary file that is deleted on exit.
+		 */
+		public ViaMappedFile() throws IOException {
+			this(createTempFile());
+		}
+
+		/**
+		 * Creates an empty list in the given file, truncating it.
+		 */
+		public ViaMappedFile(Path file) throws IOException {
+			this(FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+					StandardOpenOption.READ, StandardOpenOption.WRITE), false);
+			header.putInt(MAGIC_OFFSET, MAGIC);
+			header.putInt(SIZE_OFFSET, 0);
+			header.putInt(TAG_OFFSET, 0);
+		}
+
+		/**
+		 * Opens a list that was previously written to the given file.
+		 */
+		public static ViaMappedFile open(Path file, boolean readOnly) throws IOException {
+			FileChannel channel = readOnly ?
+					FileChannel.open(file, StandardOpenOption.READ) :
+					FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+			ViaMappedFile list = new ViaMappedFile(channel, readOnly);
+			if (list.header.getInt(MAGIC_OFFSET) != MAGIC) {
+				channel.close();
+				throw new IOException("Not an IntList file: " + file);
+			}
+			int size = list.header.getInt(SIZE_OFFSET);
+			for (int r = 0; r << REGION_SHIFT < size; r++)
+				list.mapRegion(r);
+			list.size = size;
+			return list;
+		}
+
+		private ViaMappedFile(FileChannel channel, boolean readOnly) throws IOException {
+			this.channel = channel;
+			this.readOnly = readOnly;
+			header = channel.map(readOnly ? FileChannel.MapMode.READ_ONLY : FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+			header.order(ByteOrder.nativeOrder());
+			regions = new IntBuffer[1];
+			view = false;
+		}
+
+		private ViaMappedFile(ViaMappedFile other) {
+			channel = other.channel;
+			readOnly = true;
+			view = true;
+			header = other.header;
+			regions = other.regions.clone();
+			size = other.size;
+		}
+
+		private static Path createTempFile() throws IOException {
+			Path file = Files.createTempFile("IntList", ".bin");
+			file.toFile().deleteOnExit();
+			return file;
+		}
+
+		/**
+		 * Read-only list over the same mapping with the current contents, so that threads share one copy.
+		 * The view does not own the channel: its {@link #close()} does nothing, and it stays readable
+		 * only until this list is closed.
+		 */
+		public ViaMappedFile readOnlyView() {
+			return new ViaMappedFile(this);
+		}
+
+		public int size() {
+			return size;
+		}
+
+		/**
+		 * Tag of the contents kept in the header, so that a reader of an existing file can tell how it was
+		 * filled. Zero in a new file.
+		 */
+		public int tag() {
+			return header.getInt(TAG_OFFSET);
+		}
+
+		public void setTag(int tag) {
+			if (readOnly)
+				throw new UnsupportedOperationException();
+			header.putInt(TAG_OFFSET, tag);
+		}
+
+		public void add(int value) {
+			if (readOnly)
+				throw new UnsupportedOperationException();
+			int r = size >>> REGION_SHIFT;
+			if (r >= regions.length || regions[r] == null)
+				mapRegion(r);
+			regions[r].put(size & REGION_MASK, value);
+			header.putInt(SIZE_OFFSET, ++size);
+		}
+
+		public int getInt(int index) {
+			if (index < 0 || index >= size)
+				throw new IndexOutOfBoundsException();
+			return regions[index >>> REGION_SHIFT].get(index & REGION_MASK);
+		}
+
+		public void forEachInt(IntConsumer action) {
+			for (int r = 0; r << REGION_SHIFT < size; r++) {
+				IntBuffer region = regions[r];
+				for (int i = 0, n = Math.min(REGION_INTS, size - (r << REGION_SHIFT)); i < n; i++)
+					action.accept(region.get(i));
+			}
+		}
+
+		public int reduce(int from, int to, int identity, IntBinaryOperator op) {
+			checkRange(from, to, size);
+			int result = identity;
+			while (from < to) {
+				IntBuffer region = regions[from >>> REGION_SHIFT];
+				int i = from & REGION_MASK;
+				int n = i + Math.min(to - from, REGION_INTS - i);
+				from += n - i;
+				for (; i < n; i++)
+					result = op.applyAsInt(result, region.get(i));
+			}
+			return result;
+		}
+
+		public int sum(int from, int to) {
+			checkRange(from, to, size);
+			int sum = 0;
+			while (from < to) {
+				IntBuffer region = regions[from >>> REGION_SHIFT];
+				int i = from & REGION_MASK;
+				int n = i + Math.min(to - from, REGION_INTS - i);
+				from += n - i;
+				for (; i < n; i++)
+					sum += region.get(i);
+			}
+			return sum;
+		}
+
+		public void addAll(int[] src, int off, int len) {
+			if (readOnly)
+				throw new UnsupportedOperationException();
+			Objects.checkFromIndexSize(off, len, src.length);
+			while (len > 0) {
+				int r = size >>> REGION_SHIFT;
+				if (r >= regions.length || regions[r] == null)
+					mapRegion(r);
+				int i = size & REGION_MASK;
+				int n = Math.min(len, REGION_INTS - i);
+				regions[r].put(i, src, off, n);
+				size += n;
+				off += n;
+				len -= n;
+			}
+			header.putInt(SIZE_OFFSET, size);
+		}
+
+		public void getInts(int index, int[] dst, int off, int len) {
+			Objects.checkFromIndexSize(index, len, size);
+			while (len > 0) {
+				int i = index & REGION_MASK;
+				int n = Math.min(len, REGION_INTS - i);
+				regions[index >>> REGION_SHIFT].get(i, dst, off, n);
+				index += n;
+				off += n;
+				len -= n;
+			}
+		}
+
+		/**
+		 * Maps the data once more as a single read-only buffer over the same pages, so it works only below 2 GB.
+		 */
+		public IntBuffer asIntBuffer() {
+			try {
+				return channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES, size * 4L)
+						.order(ByteOrder.nativeOrder()).asIntBuffer().asReadOnlyBuffer();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		public long byteSize() {
+			long mapped = 0;
+			for (IntBuffer region : regions)
+				if (region != null)
+					mapped += region.capacity() * 4L;
+			return HEADER_BYTES + mapped;
+		}
+
+		/**
+		 * Closes the file, or does nothing for a {@link #readOnlyView() view}, which leaves the channel
+		 * to the list it was made from. Mapped memory is released by GC when the list and all its views
+		 * are unreachable.
+		 */
+		public void close() throws IOException {
+			if (view)
+				return;
+			if (!readOnly)
+				header.force();
+			channel.close();
+		}
+
+		private void mapRegion(int r) {
+			if (r >= regions.length)
+				regions = Arrays.copyOf(regions, Math.max(regions.length * 2, r + 1));
+			try {
+				long position = HEADER_BYTES + ((long)r << (REGION_SHIFT + 2));
+				long length = readOnly ? Math.min(REGION_INTS * 4L, channel.size() - position) : REGION_INTS * 4L;
+				regions[r] = channel.map(readOnly ? FileChannel.MapMode.READ_ONLY : FileChannel.MapMode.READ_WRITE,
+						position, length).order(ByteOrder.nativeOrder()).asIntBuffer();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+
+	private static void checkRange(int from, int to, int size) {
+		if (from < 0 || to > size || from > to)
+			throw new IndexOutOfBoundsException();
 	}
 }
@@ -0,0 +1,104 @@
+import java.util.*;
+
+/**
+ * Benchmark the latency of individual {@link IntList#add(int) add} calls for implementations of simple
+ * {@link IntList} interface, so that stalls on growth show up in the tail.
+ */
+public class IntListAppendTiming {
+	private static final int SIZE = 10000000;
+	private static final int STABLE_PASS = 2;
+	private static final double[] PERCENTILES = { 50, 90, 99, 99.9, 99.99 };
+	private static final String[] LABELS = { "p50", "p90", "p99", "p999", "p9999", "max" };
+
+	static class Test {
+		private final Class<?> listImplClass;
+		private final int[] values = new int[SIZE];
+		private final long[] latency = new long[SIZE];
+		private final Stats[] stats = new Stats[PERCENTILES.length + 1];
+
+		private int dummy; // to avoid HotSpot optimizing away appends
+
+		private Test(String className) throws Exception {
+			listImplClass = Class.forName(IntList.class.getName() + "$" + className);
+			Random random = new Random(1);
+			for	(int i = 0; i < SIZE; i++)
+				values[i] = random.nextInt();
+			for (int k = 0; k < stats.length; k++)
+				stats[k] = new Stats();
+		}
+
+		private void run(int pass) throws Exception {
+			IntList list = (IntList)listImplClass.newInstance();
+			long start = System.nanoTime();
+			long prev = start;
+			for (int i = 0; i < SIZE; i++) {
+				list.add(values[i]);
+				long now = System.nanoTime();
+				latency[i] = now - prev;
+				prev = now;
+			}
+			double avg = (double)(prev - start) / SIZE;
+			dummy = list.getInt(SIZE - 1);
+			if (list instanceof AutoCloseable)
+				((AutoCloseable)list).close();
+			Arrays.sort(latency);
+			StringBuilder sb = new StringBuilder();
+			for (int k = 0; k <= PERCENTILES.length; k++) {
+				long time = k < PERCENTILES.length ?
+						latency[(int)Math.min(SIZE - 1, Math.ceil(PERCENTILES[k] / 100 * SIZE) - 1)] :
+						latency[SIZE - 1];
+				if (pass >= STABLE_PASS)
+					stats[k].add(time);
+				sb.append(String.format(Locale.US, " %s=%d", LABELS[k], time));
+			}
+			System.out.printf(Locale.US, "%30s: avg %.2f ns,%s ns per add (%d)%n",
+					listImplClass.getSimpleName(), avg, sb, dummy);
+		}
+
+		private void record(Results results) {
+			for (int k = 0; k <= PERCENTILES.length; k++)
+				results.record(listImplClass.getSimpleName() + "/" + LABELS[k], SIZE, 1, "ns/add", true, stats[k]);
+		}
+
+		private void printSummary() {
+			StringBuilder sb = new StringBuilder();
+			for (int k = 0; k <= PERCENTILES.length; k++)
+				sb.append(String.format(Locale.US, " %s=%.0f", LABELS[k], stats[k].mean()));
+			System.out.printf(Locale.US, "%30s:%s ns per add%n", listImplClass.getSimpleName(), sb);
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		if (args.length < 2) {
+			System.err.println("Usage: " + IntListAppendTiming.class + " <passes> <impl> [<impl> ...]");
+			System.err.println("Where: <passes>  is the number of passes to run tests for.");
+			System.err.println("       <impl>    is one of: ");
+			for (Class c : IntList.class.getDeclaredClasses())
+				System.err.println("                    " + c.getSimpleName());
+			System.err.println("Use -Dresults=<file> to append results to <file> instead of IntListAppendTiming-<date>.csv.");
+			return;
+		}
+
+		int passes = Integer.decode(args[0]);
+		String[] classes = Arrays.copyOfRange(args, 1, args.length);
+
+		List<Test> tests = new ArrayList<Test>();
+		for (String className : classes)
+			tests.add(new Test(className));
+
+		for (int pass = 1; pass <= passes; pass++) {
+			System.out.printf("----- PASS %d -----%n", pass);
+			for (Test test : tests)
+				test.run(pass);
+		}
+		if (passes >= STABLE_PASS) {
+			System.out.printf("----- AVERAGE FROM PASS %d -----%n", STABLE_PASS);
+			for (Test test : tests)
+				test.printSummary();
+		}
+		try (Results results = Results.open(IntListAppendTiming.class)) {
+			for (Test test : tests)
+				test.record(results);
+		}
+	}
+}
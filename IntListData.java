@@ -0,0 +1,44 @@
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
+
+/**
+ * Contents of lists timed by {@link IntListIterationTiming}, {@link IntListThroughput} and their JMH ports:
+ * uniform random ints or ints with a random number of significant bits, which {@link IntList.ViaBitPacked}
+ * packs less tightly. A {@link IntList.ViaMappedFile} kept in {@code mappedFile} between runs is tagged with
+ * the kind of its contents and is reused only for the same kind.
+ */
+class IntListData {
+	private static final int UNIFORM_TAG = 1;
+	private static final int VARYING_BITS_TAG = 2;
+
+	private IntListData() {}
+
+	static IntList create(String className, int size, boolean varyingBits, String mappedFile) throws Exception {
+		if (mappedFile != null && className.equals(IntList.ViaMappedFile.class.getSimpleName())) {
+			Path file = Paths.get(mappedFile);
+			int tag = varyingBits ? VARYING_BITS_TAG : UNIFORM_TAG;
+			if (Files.exists(file)) {
+				IntList.ViaMappedFile list = IntList.ViaMappedFile.open(file, true);
+				if (list.tag() == tag && list.size() >= size)
+					return list;
+				System.out.printf("Regenerating %s with %d %s ints%n", file, size, varyingBits ? "varying bits" : "uniform");
+				list.close();
+			}
+			IntList.ViaMappedFile list = new IntList.ViaMappedFile(file);
+			fill(list, size, varyingBits);
+			list.setTag(tag); // last, so that a partially filled file is never reused
+			return list;
+		}
+		return fill((IntList)Class.forName(IntList.class.getName() + "$" + className).getDeclaredConstructor().newInstance(),
+				size, varyingBits);
+	}
+
+	static IntList fill(IntList list, int size, boolean varyingBits) {
+		Random random = new Random(1);
+		for	(int i = 0; i < size; i++)
+			list.add(varyingBits ? random.nextInt(1 << random.nextInt(31)) : random.nextInt());
+		return list;
+	}
+}
@@ -1,6 +1,3 @@
-import java.io.FileOutputStream;
-import java.io.PrintWriter;
-import java.text.SimpleDateFormat;
 import java.util.*;
 
 /**
@@ -15,33 +12,60 @@ public class IntListIterationTiming {
 	private static final int STABLE_PASS = 2;
 	private static final int WARM_UP_REPS = 3;
 
+	private static final String ITERATION = System.getProperty("iteration", "external");
+	private static final String MAPPED_FILE = System.getProperty("mappedFile");
+
+	private static final boolean BULK = Boolean.getBoolean("bulk");
+	private static final int BATCH_SIZE = 4096;
+
 	static class Test {
 		private final IntList list;
+		private final boolean internal;
+		private final String name;
+		private final int[] sizes;
 
 		private int dummy; // to avoid HotSpot optimizing away iteration
-		private Map<Integer, TimeStats> stats = new HashMap<Integer, TimeStats>();
+		private Map<Integer, Stats> stats = new HashMap<Integer, Stats>();
 
 		private Test(String className, int size) throws Exception {
-			list = (IntList)Class.forName(IntList.class.getName() + "$" + className).newInstance();
-			Random random = new Random(1);
-			for	(int i = 0; i < size; i++)
-				list.add(random.nextInt());
+			list = IntListData.create(className, size, false, MAPPED_FILE);
+			internal = false;
+			name = className;
+			sizes = CacheProfiler.sweepSizes((double)list.byteSize() / list.size(), MIN_SIZE, size);
+		}
+
+		private Test(Test external) {
+			list = external.list;
+			internal = true;
+			name = external.name + "/internal";
+			sizes = external.sizes;
 		}
 
 		private double run(int pass, int size) {
-			TimeStats s = stats.get(size);
+			Stats s = stats.get(size);
 			if (s == null)
-				stats.put(size, s = new TimeStats());
-			int reps = pass > STABLE_PASS ? (int)(TARGET_TIME / s.avgTime() / size) : INITIAL_ITERATIONS / size;
+				stats.put(size, s = new Stats());
+			int reps = pass > STABLE_PASS ? (int)(TARGET_TIME / s.mean() / size) : INITIAL_ITERATIONS / size;
 			time(size, WARM_UP_REPS);
+			MemoryProbe probe = MemoryProbe.start();
 			double time = time(size, reps);
-			if (pass >= STABLE_PASS)
-				s.add(time);
-			System.out.printf(Locale.US, "%30s[%8d]: %.2f %s ns per item (%d x %d)%n",
-					list.getClass().getSimpleName(), size, time, s, dummy, reps);
+			probe.stop();
+			boolean outlier = pass >= STABLE_PASS && s.add(time);
+			System.out.printf(Locale.US, "%30s[%8d]: %.2f %s ns per item, %.2f bytes per item, %s (%d x %d)%s%n",
+					name, size, time, s.toRangeString(), (double)list.byteSize() / list.size(),
+					probe.format((double)reps * size), dummy, reps, outlier ? " OUTLIER" : "");
 			return time;
 		}
 
+		private boolean isStable(int size) {
+			Stats s = stats.get(size);
+			return s != null && s.isStable();
+		}
+
+		private void printSummary(int size) {
+			System.out.printf(Locale.US, "%30s[%8d]: %s ns per item%n", name, size, stats.get(size).toSummaryString());
+		}
+
 		private double time(int size, int reps) {
 			dummy = 0;
 			long start = System.nanoTime();
@@ -51,6 +75,8 @@ public class IntListIterationTiming {
 		}
 
 		private int runIteration(int size) {
+			if (internal)
+				return list.sum(0, size);
 			int sum = 0;
 			for (int i = 0; i < size; i++)
 				sum += list.getInt(i);
@@ -58,6 +84,81 @@ public class IntListIterationTiming {
 		}
 	}
 
+	/**
+	 * Times filling a list of {@code MAX_SIZE} elements and exporting it back, one int at a time and in batches.
+	 */
+	static class BulkTest {
+		private static final String[] KINDS = { "add", "addAll", "getInt", "getInts" };
+
+		private final Class<?> listImplClass;
+		private final int[] data = new int[MAX_SIZE];
+		private final int[] batch = new int[BATCH_SIZE];
+		private final Stats[] stats = new Stats[KINDS.length];
+
+		private int dummy; // to avoid HotSpot optimizing away export
+
+		private BulkTest(String className) throws Exception {
+			listImplClass = Class.forName(IntList.class.getName() + "$" + className);
+			Random random = new Random(1);
+			for (int i = 0; i < MAX_SIZE; i++)
+				data[i] = random.nextInt();
+			for (int k = 0; k < KINDS.length; k++)
+				stats[k] = new Stats();
+		}
+
+		private void run(int pass) throws Exception {
+			dummy = 0;
+			long t0 = System.nanoTime();
+			IntList list = (IntList)listImplClass.newInstance();
+			for (int i = 0; i < MAX_SIZE; i++)
+				list.add(data[i]);
+			long t1 = System.nanoTime();
+			close(list);
+			list = (IntList)listImplClass.newInstance();
+			for (int i = 0; i < MAX_SIZE; i += BATCH_SIZE)
+				list.addAll(data, i, Math.min(BATCH_SIZE, MAX_SIZE - i));
+			long t2 = System.nanoTime();
+			for (int i = 0; i < MAX_SIZE; i++)
+				dummy += list.getInt(i);
+			long t3 = System.nanoTime();
+			for (int i = 0; i < MAX_SIZE; i += BATCH_SIZE) {
+				int len = Math.min(BATCH_SIZE, MAX_SIZE - i);
+				list.getInts(i, batch, 0, len);
+				dummy += batch[len - 1];
+			}
+			long t4 = System.nanoTime();
+			close(list);
+			long[] times = { t1 - t0, t2 - t1, t3 - t2, t4 - t3 };
+			for (int k = 0; k < KINDS.length; k++) {
+				double time = (double)times[k] / MAX_SIZE;
+				boolean outlier = pass >= STABLE_PASS && stats[k].add(time);
+				System.out.printf(Locale.US, "%30s[%8s]: %.2f %s ns per item (%d)%s%n",
+						listImplClass.getSimpleName(), KINDS[k], time, stats[k].toRangeString(), dummy,
+						outlier ? " OUTLIER" : "");
+			}
+		}
+
+		/**
+		 * Frees native memory of off-heap lists, which GC does not do for shared arenas.
+		 */
+		private static void close(IntList list) throws Exception {
+			if (list instanceof AutoCloseable)
+				((AutoCloseable)list).close();
+		}
+
+		private void record(Results results) {
+			for (int k = 0; k < KINDS.length; k++)
+				results.record(listImplClass.getSimpleName() + "/" + KINDS[k], MAX_SIZE, 1, "ns/item", true, stats[k]);
+		}
+
+		private boolean isStable() {
+			for (Stats s : stats)
+				if (!s.isStable())
+					return false;
+			return true;
+		}
+	}
+
 	public static void main(String[] args) throws Exception {
 		if (args.length < 2) {
 			System.err.println("Usage: " + IntListIterationTiming.class + " <passes> <impl> [<impl> ...]");
@@ -65,29 +166,67 @@ public class IntListIterationTiming {
 			System.err.println("       <impl>    is one of: ");
 			for (Class c : IntList.class.getDeclaredClasses())
 				System.err.println("                    " + c.getSimpleName());
+			System.err.println("Use -Diteration=external|internal|both to time getInt loop and/or IntList.sum.");
+			System.err.println("Use -DmappedFile=<file> to keep ViaMappedFile data between runs instead of regenerating it.");
+			System.err.println("Use -Dbulk=true to also time per-int vs batched fill (add/addAll) and export (getInt/getInts).");
+			System.err.println("Use -Dsizes=decades to time sizes " + MIN_SIZE + ", 10x that, ... up to " + MAX_SIZE +
+					" instead of sizes around cache capacities measured by CacheProfiler.");
+			System.err.println("Use -Dresults=<file> to append results to <file> instead of IntListIterationTiming-<date>.csv.");
+			System.err.println("Use -DgcDistortion=<percent> to flag passes that spent more than <percent> (default 1) in GC.");
+			System.err.println("Use -DtargetCI=<percent> to stop timing each case once 95% confidence interval of its mean");
+			System.err.println("    is within <percent> of the mean; <passes> is then the upper bound.");
 			return;
 		}
 
 		int passes = Integer.decode(args[0]);
 		String[] classes = Arrays.copyOfRange(args, 1, args.length);
 
+		CacheProfiler.printLevels();
 		List<Test> tests = new ArrayList<Test>();
-		for (String className : classes)
-			tests.add(new Test(className, MAX_SIZE));
-
-		PrintWriter log = new PrintWriter(new FileOutputStream("IntListIterationTiming-" +
-				new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date()) + "-.log"), true);
-		log.println("impl asize time");
+		for (String className : classes) {
+			Test test = new Test(className, MAX_SIZE);
+			if (!ITERATION.equals("internal"))
+				tests.add(test);
+			if (!ITERATION.equals("external"))
+				tests.add(new Test(test));
+		}
+		List<BulkTest> bulkTests = new ArrayList<BulkTest>();
+		if (BULK)
+			for (String className : classes)
+				bulkTests.add(new BulkTest(className));
 
 		for (int pass = 1; pass <= passes; pass++) {
 			System.out.printf("----- PASS %d -----%n", pass);
+			boolean stable = true;
 			for (Test test : tests)
-				for (int size = MIN_SIZE; size <= MAX_SIZE; size *= 10) {
-					double time = test.run(pass, size);
-					if (pass >= STABLE_PASS)
-						log.printf(Locale.US, "%s %d %.4f%n", test.list.getClass().getSimpleName(), size, time);
+				for (int size : test.sizes) {
+					if (test.isStable(size))
+						continue;
+					stable = false;
+					test.run(pass, size);
+				}
+			for (BulkTest test : bulkTests)
+				if (!test.isStable()) {
+					stable = false;
+					test.run(pass);
 				}
+			if (stable) {
+				System.out.println("All cases are stable");
+				break;
+			}
+		}
+		if (passes >= STABLE_PASS) {
+			System.out.printf("----- SUMMARY FROM PASS %d -----%n", STABLE_PASS);
+			for (Test test : tests)
+				for (int size : test.sizes)
+					test.printSummary(size);
+		}
+		try (Results results = Results.open(IntListIterationTiming.class)) {
+			for (Test test : tests)
+				for (int size : test.sizes)
+					results.record(test.name, size, 1, "ns/item", true, test.stats.get(size));
+			for (BulkTest test : bulkTests)
+				test.record(results);
 		}
-		log.close();
 	}
 }
@@ -1,6 +1,8 @@
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.Phaser;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntBinaryOperator;
+import java.util.function.IntUnaryOperator;
 
 /**
  * Multi-threaded benchmark for implementations of simple {@link IntList} interface.
@@ -9,32 +11,81 @@ import java.util.concurrent.atomic.AtomicInteger;
 public class IntListThroughput {
 	private static final int MIN_SIZE = 1000;
 	private static final int MAX_SIZE = 10000000;
-	private static final int DURATION_SECS = 20;
-	private static final int AVG_FROM_SEC = 3;
+	private static final int DURATION_SECS = Integer.getInteger("duration", 20);
+	private static final int WARMUP_SECS = Integer.getInteger("warmup", 3);
+	private static final int INTERVAL_MILLIS = Integer.getInteger("interval", 1000);
 
+	private static final String ITERATION = System.getProperty("iteration", "external");
+	private static final String MAPPED_FILE = System.getProperty("mappedFile");
+	private static final int WRITERS = Integer.getInteger("writers", 0);
+	private static final String SHARING = System.getProperty("sharing", WRITERS > 0 ? "shared" : "private");
+	private static final boolean CHAIN = System.getProperty("dispatch", "fused").equals("chain");
+	private static final String EXECUTOR = System.getProperty("executor", "platform");
+	static final int APPEND_LIMIT = 100000000; // per measurement, to bound memory
+	private static final int LATENCY_SAMPLING = 16; // iterations per timed one, power of 2
+
+	enum Iteration {
+		EXTERNAL("ext"), INTERNAL("int"), SIMD("simd");
+
+		final String tag;
+
+		Iteration(String tag) {
+			this.tag = tag;
+		}
+	}
+
+	enum Sharing {
+		/** Each thread scans its own copy of the list. */
+		PRIVATE,
+		/** All threads scan the same list. */
+		SHARED,
+		/** Threads scan disjoint ranges of the same list, cooperatively covering it once per iteration. */
+		PARTITIONED
+	}
+
+	enum Executor {
+		/** Platform daemon thread per worker. */
+		PLATFORM,
+		/** Virtual thread per worker, on {@code jdk.virtualThreadScheduler.parallelism} carriers. */
+		VIRTUAL,
+		/** Worker task per thread in a {@link ForkJoinPool} with max-threads parallelism. */
+		FJP
+	}
+
+	private static Executor executor;
+	private static ForkJoinPool pool;
 	private static Phaser phaser;
 	private static List<Test> tests;
+	private static List<Writer> writers;
 
 	static class Test implements Runnable {
-		final IntList list;
-		final IntOp op;
+		IntList list;
+		final IntOpPipeline ops;
+		final IntUnaryOperator kernel;
+		final IntBinaryOperator sumOp;
 
-		final AtomicInteger counter = new AtomicInteger();
+		final PaddedCounter counter = new PaddedCounter();
+		final LatencyHistogram latency = new LatencyHistogram(); // of sampled iterations, only when recording
 
 		int size;
+		int from; // first element of the range when not scanning the tail
+		boolean tail; // scan the last size elements of a list that is being appended to
+		Iteration iteration;
 		int dummy; // to avoid HotSpot optimizing away iteration
+		volatile long threadId; // of the thread that runs this test, for MemoryProbe
 
+		volatile boolean recording;
 		volatile boolean done;
 
-		private Test(Class<?> listImplClass, IntOp op, int size) throws Exception {
-			this.op = op;
-			list = (IntList)listImplClass.newInstance();
-			Random random = new Random(1);
-			for	(int i = 0; i < size; i++)
-				list.add(random.nextInt(1 << random.nextInt(31)));
+		private Test(IntList list, IntOpPipeline ops) {
+			this.list = list;
+			this.ops = ops;
+			kernel = CHAIN ? ops : ops.fuse();
+			sumOp = (sum, x) -> sum + kernel.applyAsInt(x);
 		}
 
 		public void run() {
+			threadId = Thread.currentThread().threadId();
 			try {
 				while (true) {
 					done = false;
@@ -47,22 +98,90 @@ public class IntListThroughput {
 			}
 		}
 
+		/**
+		 * Times only one iteration in {@code LATENCY_SAMPLING} and only while recording, so that
+		 * {@code System.nanoTime()} adds little to the throughput of short iterations.
+		 */
 		private void test() {
-			int counter = 0;
+			long counter = this.counter.get();
+			int sum = 0; // written to dummy only once, not to dirty the cache line on every iteration
 			while (!done) {
-				dummy += runIteration(size);
+				if ((counter & (LATENCY_SAMPLING - 1)) == 0 && recording) {
+					long start = System.nanoTime();
+					sum += runIteration(size);
+					latency.record(System.nanoTime() - start);
+				} else
+					sum += runIteration(size);
 				this.counter.lazySet(++counter);
 			}
+			dummy += sum;
 		}
 
 		private int runIteration(int size) {
+			int to = tail ? list.size() : from + size;
+			int start = to - size;
+			if (iteration == Iteration.INTERNAL)
+				return list.reduce(start, to, 0, sumOp);
+			if (iteration == Iteration.SIMD)
+				return IntVectors.sum(list, start, to, ops.factor());
 			int sum = 0;
-			for (int i = 0; i < size; i++)
-				sum += op.compute(list.getInt(i));
+			for (int i = start; i < to; i++)
+				sum += kernel.applyAsInt(list.getInt(i));
 			return sum;
 		}
 	}
 
+	static class Writer implements Runnable {
+		IntList list;
+		int limit;
+
+		final PaddedCounter counter = new PaddedCounter();
+
+		volatile long threadId; // of the thread that runs this writer, for MemoryProbe
+		volatile boolean done;
+
+		public void run() {
+			threadId = Thread.currentThread().threadId();
+			try {
+				while (true) {
+					done = false;
+					phaser.arriveAndAwaitAdvance();
+					append();
+					phaser.arriveAndAwaitAdvance();
+				}
+			} catch (Exception e) {
+				e.printStackTrace();
+			}
+		}
+
+		private void append() throws InterruptedException {
+			long counter = this.counter.get();
+			int x = System.identityHashCode(this) | 1;
+			while (!done && list.size() < limit) {
+				x ^= x << 13; // xorshift, to make values without the cost of Random
+				x ^= x >>> 17;
+				x ^= x << 5;
+				list.add(x >>> (x & 31));
+				this.counter.lazySet(++counter);
+			}
+			while (!done)
+				Thread.sleep(1);
+		}
+	}
+
+	private static IntList createList(Class<?> listImplClass, int size) throws Exception {
+		return IntListData.create(listImplClass.getSimpleName(), size, true, MAPPED_FILE);
+	}
+
+	private static List<Iteration> parseIterations(String s) {
+		if (s.equals("both"))
+			return Arrays.asList(Iteration.EXTERNAL, Iteration.INTERNAL);
+		List<Iteration> list = new ArrayList<Iteration>();
+		for (String name : s.split(","))
+			list.add(Iteration.valueOf(name.trim().toUpperCase(Locale.US)));
+		return list;
+	}
+
 	private static List<String> getListImplClassNames() {
 		List<String> list = new ArrayList<String>();
 		for (Class c : IntList.class.getDeclaredClasses())
@@ -77,77 +196,305 @@ public class IntListThroughput {
 
 	public static void main(String[] args) throws Exception {
 		if (args.length != 4) {
-			System.err.println("Usage: " + IntListIterationTiming.class + " <min-threads> <max-threads> <list-impl> <op>");
+			System.err.println("Usage: " + IntListThroughput.class + " <min-threads> <max-threads> <list-impl> <ops>");
 			System.err.println("Where: <min-threads> the minimal number of threads.");
 			System.err.println("       <max-threads> the maximal number of threads.");
 			System.err.println("       <list-impl>   is one of " + getListImplClassNames());
-			System.err.println("       <op>          is one of " + Arrays.asList(IntOp.values()));
+			System.err.println("       <ops>         is one of " + Arrays.asList(IntOp.values()) + " or a comma-separated chain of them.");
+			System.err.println("Use -Diteration=<mode>[,<mode>...] to run getInt loop (external), IntList.reduce (internal)");
+			System.err.println("    and/or Vector API sum (simd, needs --add-modules jdk.incubator.vector); both == external,internal.");
+			System.err.println("Use -DmappedFile=<file> to keep ViaMappedFile data between runs and share it read-only among threads.");
+			System.err.println("Use -Dwriters=<n> to append with <n> threads to one list that all reader threads scan the tail of;");
+			System.err.println("    needs ViaConcurrentSegments and stops appending after " + APPEND_LIMIT + " items per measurement.");
+			System.err.println("Use -Dsharing=<mode> to give each thread its own list (private, default), scan one list with all");
+			System.err.println("    threads (shared, default with writers) or split one list into per-thread ranges (partitioned).");
+			System.err.println("Use -Dduration=<secs> (default 20), -Dwarmup=<secs> (default 3) and -Dinterval=<millis> (default 1000)");
+			System.err.println("    to set how long each measurement runs, how much of it is not counted and how often it is sampled.");
+			System.err.println("Use -Ddispatch=chain to apply <ops> through one call site (megamorphic for 3+ distinct ops)");
+			System.err.println("    instead of the default kernel fused from method handles (fused).");
+			System.err.println("Use -Dexecutor=<mode> to run readers on platform threads (platform, default), virtual threads");
+			System.err.println("    (virtual, set carriers with -Djdk.virtualThreadScheduler.parallelism=<n>) or ForkJoinPool tasks (fjp).");
+			System.err.println("Use -Dsizes=decades to scan sizes " + MIN_SIZE + ", 10x that, ... up to " + MAX_SIZE +
+					" instead of sizes around cache capacities measured by CacheProfiler.");
+			System.err.println("Use -Dresults=<file> to append results to <file> instead of IntListThroughput-<date>.csv.");
+			System.err.println("Use -DgcDistortion=<percent> to flag measurements that spent more than <percent> (default 1) in GC.");
+			System.err.println("Use -DtargetCI=<percent> to end a measurement early once 95% confidence interval of its mean");
+			System.err.println("    is within <percent> of the mean.");
 			return;
 		}
 
 		int minThreads = Integer.decode(args[0]);
 		int maxThreads = Integer.decode(args[1]);
 		Class<?> listImplClass = getListImplClass(args[2]);
-		IntOp op = IntOp.valueOf(args[3].toUpperCase(Locale.US));
+		IntOpPipeline ops = IntOpPipeline.parse(args[3]);
+		List<Iteration> iterations = parseIterations(ITERATION);
+		Sharing sharing = Sharing.valueOf(SHARING.toUpperCase(Locale.US));
+		executor = Executor.valueOf(EXECUTOR.toUpperCase(Locale.US));
+		if (WRITERS > 0 && listImplClass != IntList.ViaConcurrentSegments.class) {
+			System.err.println("Only ViaConcurrentSegments supports concurrent appends");
+			return;
+		}
+		if (WRITERS > 0 && sharing != Sharing.SHARED) {
+			System.err.println("Writers append to a shared list, use -Dsharing=shared");
+			return;
+		}
 
+		CacheProfiler.printLevels();
 		phaser = new Phaser(1);
 		tests = new ArrayList<Test>(maxThreads);
+		if (executor == Executor.FJP)
+			pool = new ForkJoinPool(maxThreads);
+		else if (executor == Executor.VIRTUAL)
+			System.out.printf("Virtual threads on %s carriers%n", System.getProperty("jdk.virtualThreadScheduler.parallelism",
+					String.valueOf(Runtime.getRuntime().availableProcessors())));
 
-		for (int i = 0; i < maxThreads; i++)
-			tests.add(new Test(listImplClass, op, MAX_SIZE));
+		IntList list = null;
+		for (int i = 0; i < maxThreads; i++) {
+			if (list instanceof IntList.ViaMappedFile)
+				list = ((IntList.ViaMappedFile)list).readOnlyView();
+			else if (list == null || sharing == Sharing.PRIVATE)
+				list = createList(listImplClass, MAX_SIZE);
+			tests.add(new Test(list, ops));
+		}
+		writers = new ArrayList<Writer>(WRITERS);
+		for (int i = 0; i < WRITERS; i++)
+			startWriter();
 		for (int i = 0; i < minThreads - 1; i++)
 			startThread(i);
 
+		IntList first = tests.get(0).list;
+		double bytesPerItem = (double)first.byteSize() / first.size();
+		int[] sizes = CacheProfiler.sweepSizes(bytesPerItem, MIN_SIZE, MAX_SIZE);
+		Results results = Results.open(IntListThroughput.class);
+		String caseName = listImplClass.getSimpleName() + "/" + ops + "/" + (CHAIN ? "chain" : "fused") + "/" +
+				sharing.name().toLowerCase(Locale.US) + "/" + executor.name().toLowerCase(Locale.US) +
+				(WRITERS > 0 ? "/" + WRITERS + "writers" : "");
+
 		for (int threads = minThreads; threads <= maxThreads; threads++) {
 			startThread(threads - 1);
-			for (int size = MIN_SIZE; size <= MAX_SIZE; size *= 10) {
-				System.out.printf(Locale.US, "#%d [%,10d]: ", threads, size);
-				launchTest(threads, size);
-				Stats stats = gatherTestStats(threads, size);
-				stopTest(threads);
-				System.out.printf(Locale.US, " done %s x 10^9 ops/sec%n", stats);
+			for (int size : sizes) {
+				for (Iteration iteration : iterations) {
+					System.out.printf(Locale.US, "#%d [%,10d] %s: ", threads, size, iteration.tag);
+					if (WRITERS > 0)
+						shareList(threads, createList(listImplClass, MAX_SIZE));
+					long launchTime = launchTest(threads, size, iteration, sharing == Sharing.PARTITIONED);
+					long startItems = totalItems(threads);
+					MemoryProbe probe = MemoryProbe.start(threadIds(threads));
+					Stats[] perThread = new Stats[threads];
+					Stats appends = new Stats();
+					Stats stats = gatherTestStats(threads, perThread, appends);
+					long stopTime = stopTest(threads);
+					probe.stop();
+					System.out.printf(Locale.US, " done %s x 10^9 ops/sec, per thread %s (fairness %.3f), %.2f bytes per item",
+							stats, formatMeans(perThread), fairness(perThread), bytesPerItem);
+					System.out.printf(Locale.US, "; phases %.1f + %.1f us", launchTime / 1000.0, stopTime / 1000.0);
+					System.out.printf(Locale.US, "; iteration %s ns, p999 per thread %s", totalLatency(threads), formatP999(threads));
+					System.out.printf(Locale.US, "; %s", probe.format(totalItems(threads) - startItems));
+					if (WRITERS > 0)
+						System.out.printf(Locale.US, ", %s x 10^6 appends/sec%s", appends,
+								writers.get(0).list.size() >= APPEND_LIMIT + MAX_SIZE ? " (limit reached)" : "");
+					System.out.println();
+					results.record(caseName + "/" + iteration.tag, size, threads, "10^9 ops/sec", false, stats);
+					if (WRITERS > 0)
+						results.record(caseName + "/" + iteration.tag, size, threads, "10^6 appends/sec", false, appends);
+				}
 			}
 		}
+		results.close();
 	}
 
 	private static void startThread(int i) {
 		phaser.register();
-		Thread t = new Thread(tests.get(i));
+		switch (executor) {
+			case PLATFORM:
+				Thread t = new Thread(tests.get(i));
+				t.setDaemon(true);
+				t.start();
+				break;
+			case VIRTUAL:
+				Thread.ofVirtual().start(tests.get(i));
+				break;
+			case FJP:
+				pool.execute(tests.get(i));
+				break;
+		}
+	}
+
+	private static void startWriter() {
+		phaser.register();
+		Writer writer = new Writer();
+		writers.add(writer);
+		Thread t = new Thread(writer);
 		t.setDaemon(true);
 		t.start();
 	}
 
-	private static void launchTest(int threads, int size) {
-		for (int i = 0; i < threads; i++)
-			tests.get(i).size = size;
+	/**
+	 * Fresh list for each measurement, so that appends of the previous ones do not pile up.
+	 */
+	private static void shareList(int threads, IntList list) {
+		for (int i = 0; i < threads; i++) {
+			tests.get(i).list = list;
+			tests.get(i).tail = true;
+		}
+		for (Writer writer : writers) {
+			writer.list = list;
+			writer.limit = APPEND_LIMIT + MAX_SIZE;
+		}
+	}
+
+	/**
+	 * When partitioned, thread {@code i} scans elements {@code [size * i / threads, size * (i + 1) / threads)},
+	 * otherwise every thread scans {@code [0, size)}. Returns nanoseconds it took all threads to arrive.
+	 */
+	private static long launchTest(int threads, int size, Iteration iteration, boolean partitioned) {
+		for (int i = 0; i < threads; i++) {
+			Test test = tests.get(i);
+			if (partitioned) {
+				test.from = (int)((long)size * i / threads);
+				test.size = (int)((long)size * (i + 1) / threads) - test.from;
+			} else {
+				test.from = 0;
+				test.size = size;
+			}
+			test.iteration = iteration;
+			test.latency.reset();
+		}
+		long start = System.nanoTime();
 		phaser.arriveAndAwaitAdvance();
+		return System.nanoTime() - start;
 	}
 
-	private static Stats gatherTestStats(int threads, int size) throws InterruptedException {
+	/**
+	 * Returns aggregate throughput and fills {@code perThread} with throughput of each thread.
+	 */
+	private static Stats gatherTestStats(int threads, Stats[] perThread, Stats appends) throws InterruptedException {
 		Stats stats = new Stats();
-		for (int sec = 0; sec < DURATION_SECS; sec++) {
-			long prevCount = totalCount(threads);
+		for (int i = 0; i < threads; i++)
+			perThread[i] = new Stats();
+		long[] prevCounts = new long[threads];
+		long start = System.nanoTime();
+		long warmupEnd = start + WARMUP_SECS * 1000000000L;
+		long end = start + DURATION_SECS * 1000000000L;
+		boolean measuring = false;
+		long nextDot = start + 1000000000L;
+		while (System.nanoTime() < end && !stats.isStable()) {
+			if (!measuring && System.nanoTime() >= warmupEnd) {
+				measuring = true;
+				for (int i = 0; i < threads; i++)
+					tests.get(i).recording = true;
+			}
+			for (int i = 0; i < threads; i++)
+				prevCounts[i] = tests.get(i).counter.get();
+			long prevAppends = totalAppends();
 			long prevTime = System.nanoTime();
-			Thread.sleep(1000);
-			long count = totalCount(threads);
+			Thread.sleep(INTERVAL_MILLIS);
 			long time = System.nanoTime();
-			if (sec >= AVG_FROM_SEC)
-				stats.add((double)size * (count - prevCount) / (time - prevTime));
-			System.out.print('.');
+			double total = 0;
+			for (int i = 0; i < threads; i++) {
+				Test test = tests.get(i);
+				double ops = (double)test.size * (test.counter.get() - prevCounts[i]) / (time - prevTime);
+				if (measuring)
+					perThread[i].add(ops);
+				total += ops;
+			}
+			long appendCount = totalAppends();
+			if (measuring) {
+				stats.add(total);
+				appends.add(1000.0 * (appendCount - prevAppends) / (time - prevTime));
+			}
+			if (time >= nextDot) {
+				System.out.print('.');
+				nextDot += 1000000000L;
+			}
 		}
 		return stats;
 	}
 
-	private static long totalCount(int threads) {
-		long total = 0;
+	/**
+	 * Jain's fairness index of per-thread throughput, from {@code 1/n} when one thread does all work to 1 when all are equal.
+	 */
+	private static double fairness(Stats[] stats) {
+		double sum = 0;
+		double sumSq = 0;
+		for (Stats s : stats) {
+			sum += s.mean();
+			sumSq += s.mean() * s.mean();
+		}
+		return sum * sum / (stats.length * sumSq);
+	}
+
+	private static String formatMeans(Stats[] stats) {
+		StringBuilder sb = new StringBuilder("[");
+		for (int i = 0; i < stats.length; i++) {
+			if (i > 0)
+				sb.append(", ");
+			sb.append(String.format(Locale.US, "%.3f", stats[i].mean()));
+		}
+		return sb.append("]").toString();
+	}
+
+	/**
+	 * Must be called after {@link #stopTest}, when threads no longer record.
+	 */
+	private static LatencyHistogram totalLatency(int threads) {
+		LatencyHistogram total = new LatencyHistogram();
 		for (int i = 0; i < threads; i++)
-			total += tests.get(i).counter.get();
+			total.add(tests.get(i).latency);
 		return total;
 	}
 
-	private static void stopTest(int threads) {
+	private static String formatP999(int threads) {
+		StringBuilder sb = new StringBuilder("[");
+		for (int i = 0; i < threads; i++) {
+			if (i > 0)
+				sb.append(", ");
+			sb.append(tests.get(i).latency.percentile(99.9));
+		}
+		return sb.append("]").toString();
+	}
+
+	/**
+	 * Ids of the first {@code threads} readers and of all writers.
+	 */
+	private static long[] threadIds(int threads) {
+		long[] ids = new long[threads + writers.size()];
+		for (int i = 0; i < threads; i++)
+			ids[i] = tests.get(i).threadId;
+		for (int i = 0; i < writers.size(); i++)
+			ids[threads + i] = writers.get(i).threadId;
+		return ids;
+	}
+
+	/**
+	 * Items scanned by readers so far.
+	 */
+	private static long totalItems(int threads) {
+		long total = 0;
 		for (int i = 0; i < threads; i++)
+			total += tests.get(i).counter.get() * tests.get(i).size;
+		return total;
+	}
+
+	private static long totalAppends() {
+		long total = 0;
+		for (Writer writer : writers)
+			total += writer.counter.get();
+		return total;
+	}
+
+	/**
+	 * Returns nanoseconds from the stop signal until all threads arrived.
+	 */
+	private static long stopTest(int threads) {
+		long start = System.nanoTime();
+		for (int i = 0; i < threads; i++) {
+			tests.get(i).recording = false;
 			tests.get(i).done = true;
+		}
+		for (Writer writer : writers)
+			writer.done = true;
 		phaser.arriveAndAwaitAdvance();
+		return System.nanoTime() - start;
 	}
 }
@@ -0,0 +1,272 @@
+import java.io.IOException;
+import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+/**
+ * Benchmark insert, lookup and iteration of primitive {@link IntIntMap} and {@link IntSet} against
+ * {@code HashMap<Integer, Integer>} and {@code HashSet<Integer>} with 1K to 10M random keys.
+ * Give it about {@code -Xmx4g} for 10M keys in {@code HashMap}.
+ */
+public class IntMapTiming {
+	private static final int MIN_SIZE = 1000;
+	private static final int MAX_SIZE = 10000000;
+	private static final int TOTAL_OPS = 20000000; // per timing
+	private static final int STABLE_PASS = 2;
+	private static final int MIN_RETAINED_ENTRIES = 1000000; // to measure retained heap
+
+	private static final float LOAD_FACTOR = Float.parseFloat(System.getProperty("loadFactor", "0.5"));
+
+	enum Op { INSERT, LOOKUP, ITERATE }
+
+	/**
+	 * One map or set implementation; {@code values} of sets are their keys.
+	 */
+	abstract static class Impl<M> {
+		int sum; // of iterated values, updated by consumers of internal iteration
+
+		abstract M build(int[] keys, int size);
+		abstract int lookup(M map, int[] keys, int size);
+		abstract int iterate(M map);
+		abstract int size(M map);
+	}
+
+	static class IntIntMapImpl extends Impl<IntIntMap> {
+		private final IntIntMap.EntryConsumer consumer = (key, value) -> sum += value;
+
+		IntIntMap build(int[] keys, int size) {
+			IntIntMap map = new IntIntMap(16, LOAD_FACTOR);
+			for (int i = 0; i < size; i++)
+				map.put(keys[i], i);
+			return map;
+		}
+
+		int lookup(IntIntMap map, int[] keys, int size) {
+			int sum = 0;
+			for (int i = 0; i < size; i++)
+				sum += map.get(keys[i], 0);
+			return sum;
+		}
+
+		int iterate(IntIntMap map) {
+			sum = 0;
+			map.forEach(consumer);
+			return sum;
+		}
+
+		int size(IntIntMap map) {
+			return map.size();
+		}
+	}
+
+	static class HashMapImpl extends Impl<HashMap<Integer, Integer>> {
+		private final BiConsumer<Integer, Integer> consumer = (key, value) -> sum += value;
+
+		HashMap<Integer, Integer> build(int[] keys, int size) {
+			HashMap<Integer, Integer> map = new HashMap<Integer, Integer>();
+			for (int i = 0; i < size; i++)
+				map.put(keys[i], i);
+			return map;
+		}
+
+		int lookup(HashMap<Integer, Integer> map, int[] keys, int size) {
+			int sum = 0;
+			for (int i = 0; i < size; i++)
+				sum += map.get(keys[i]);
+			return sum;
+		}
+
+		int iterate(HashMap<Integer, Integer> map) {
+			sum = 0;
+			map.forEach(consumer);
+			return sum;
+		}
+
+		int size(HashMap<Integer, Integer> map) {
+			return map.size();
+		}
+	}
+
+	static class IntSetImpl extends Impl<IntSet> {
+		private final IntConsumer consumer = key -> sum += key;
+
+		IntSet build(int[] keys, int size) {
+			IntSet set = new IntSet(16, LOAD_FACTOR);
+			for (int i = 0; i < size; i++)
+				set.add(keys[i]);
+			return set;
+		}
+
+		int lookup(IntSet set, int[] keys, int size) {
+			int count = 0;
+			for (int i = 0; i < size; i++)
+				if (set.contains(keys[i]))
+					count++;
+			return count;
+		}
+
+		int iterate(IntSet set) {
+			sum = 0;
+			set.forEach(consumer);
+			return sum;
+		}
+
+		int size(IntSet set) {
+			return set.size();
+		}
+	}
+
+	static class HashSetImpl extends Impl<HashSet<Integer>> {
+		private final Consumer<Integer> consumer = key -> sum += key;
+
+		HashSet<Integer> build(int[] keys, int size) {
+			HashSet<Integer> set = new HashSet<Integer>();
+			for (int i = 0; i < size; i++)
+				set.add(keys[i]);
+			return set;
+		}
+
+		int lookup(HashSet<Integer> set, int[] keys, int size) {
+			int count = 0;
+			for (int i = 0; i < size; i++)
+				if (set.contains(keys[i]))
+					count++;
+			return count;
+		}
+
+		int iterate(HashSet<Integer> set) {
+			sum = 0;
+			set.forEach(consumer);
+			return sum;
+		}
+
+		int size(HashSet<Integer> set) {
+			return set.size();
+		}
+	}
+
+	private static Impl<?> createImpl(String name) {
+		switch (name) {
+			case "IntIntMap": return new IntIntMapImpl();
+			case "HashMap": return new HashMapImpl();
+			case "IntSet": return new IntSetImpl();
+			case "HashSet": return new HashSetImpl();
+			default: throw new IllegalArgumentException(name);
+		}
+	}
+
+	static class Test<M> {
+		private final String name;
+		private final Impl<M> impl;
+		private final int[] keys;
+		private final Map<String, Stats> stats = new HashMap<String, Stats>();
+		private final Map<Integer, Double> retained = new HashMap<Integer, Double>(); // bytes per entry
+
+		private int dummy; // to avoid HotSpot optimizing away operations
+
+		Test(String name, Impl<M> impl, int[] keys) {
+			this.name = name;
+			this.impl = impl;
+			this.keys = keys;
+		}
+
+		void run(int pass, int size) {
+			if (!retained.containsKey(size))
+				measureRetained(size);
+			M map = impl.build(keys, size);
+			for (Op op : Op.values()) {
+				int reps = Math.max(1, TOTAL_OPS / size);
+				MemoryProbe probe = MemoryProbe.start();
+				long start = System.nanoTime();
+				for (int rep = 0; rep < reps; rep++) {
+					switch (op) {
+						case INSERT: dummy += impl.size(impl.build(keys, size)); break;
+						case LOOKUP: dummy += impl.lookup(map, keys, size); break;
+						case ITERATE: dummy += impl.iterate(map); break;
+					}
+				}
+				double time = (double)(System.nanoTime() - start) / reps / size;
+				probe.stop();
+				Stats s = stats(op, size);
+				boolean outlier = pass >= STABLE_PASS && s.add(time);
+				System.out.printf(Locale.US, "%10s[%8d] %-7s: %.2f %s ns per op, %.1f bytes per entry, %s (%d)%s%n",
+						name, size, op.name().toLowerCase(Locale.US), time, s.toRangeString(), retained.get(size),
+						probe.format((double)reps * size), dummy, outlier ? " OUTLIER" : "");
+			}
+		}
+
+		/**
+		 * Heap retained by enough copies for at least {@code MIN_RETAINED_ENTRIES} entries, per entry.
+		 */
+		private void measureRetained(int size) {
+			int copies = Math.max(1, MIN_RETAINED_ENTRIES / size);
+			List<M> maps = new ArrayList<M>(copies);
+			long before = usedHeap();
+			for (int i = 0; i < copies; i++)
+				maps.add(impl.build(keys, size));
+			long after = usedHeap();
+			long entries = 0;
+			for (M map : maps)
+				entries += impl.size(map);
+			retained.put(size, (double)(after - before) / entries);
+		}
+
+		private Stats stats(Op op, int size) {
+			String key = op + "/" + size;
+			Stats s = stats.get(key);
+			if (s == null)
+				stats.put(key, s = new Stats());
+			return s;
+		}
+
+		void record(Results results, int size) {
+			for (Op op : Op.values())
+				results.record(name + "/" + op.name().toLowerCase(Locale.US), size, 1, "ns/op", true, stats(op, size));
+			Stats s = new Stats();
+			s.add(retained.get(size));
+			results.record(name, size, 1, "bytes/entry", true, s);
+		}
+	}
+
+	private static long usedHeap() {
+		for (int i = 0; i < 3; i++)
+			System.gc();
+		Runtime runtime = Runtime.getRuntime();
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.err.println("Usage: " + IntMapTiming.class + " <passes> [<impl> ...]");
+			System.err.println("Where: <passes>  is the number of passes to run tests for.");
+			System.err.println("       <impl>    is one of IntIntMap, HashMap, IntSet, HashSet (default all).");
+			System.err.println("Use -DloadFactor=<f> to set the load factor of IntIntMap and IntSet (default 0.5).");
+			System.err.println("Use -Dresults=<file> to append results to <file> instead of IntMapTiming-<date>.csv.");
+			return;
+		}
+		int passes = Integer.decode(args[0]);
+		String[] names = args.length > 1 ? Arrays.copyOfRange(args, 1, args.length) :
+				new String[] { "IntIntMap", "HashMap", "IntSet", "HashSet" };
+
+		int[] keys = new int[MAX_SIZE];
+		Random random = new Random(1);
+		for (int i = 0; i < MAX_SIZE; i++)
+			keys[i] = random.nextInt();
+		List<Test<?>> tests = new ArrayList<Test<?>>();
+		for (String name : names)
+			tests.add(new Test<>(name, createImpl(name), keys));
+
+		for (int pass = 1; pass <= passes; pass++) {
+			System.out.printf("----- PASS %d -----%n", pass);
+			for (Test<?> test : tests)
+				for (int size = MIN_SIZE; size <= MAX_SIZE; size *= 10)
+					test.run(pass, size);
+		}
+		try (Results results = Results.open(IntMapTiming.class)) {
+			for (Test<?> test : tests)
+				for (int size = MIN_SIZE; size <= MAX_SIZE; size *= 10)
+					test.record(results, size);
+		}
+	}
+}
@@ -2,40 +2,60 @@
  * @author Roman Elizarov
  */
 public enum IntOp {
-	ID {
+	ID(1) {
 		@Override
 		public int compute(int x) {
 			return x;
 		}
 	},
 
-	X2 {
+	X2(2) {
 		@Override
 		public int compute(int x) {
 			return x * 2;
 		}
 	},
 
-	X27 {
+	X27(27) {
 		@Override
 		public int compute(int x) {
 			return x * 27;
 		}
 	},
 
-	X31 {
+	X31(31) {
 		@Override
 		public int compute(int x) {
 			return x * 31;
 		}
 	},
 
-	X37 {
+	X37(37) {
 		@Override
 		public int compute(int x) {
 			return x * 37;
 		}
 	};
 
+	private final int factor;
+
+	IntOp(int factor) {
+		this.factor = factor;
+	}
+
+	/**
+	 * Every op is a multiplication by this constant, so it can be applied lane-wise.
+	 */
+	public int factor() {
+		return factor;
+	}
+
 	public abstract int compute(int x);
+
+	/**
+	 * Pipeline that applies this op and then the next one.
+	 */
+	public IntOpPipeline then(IntOp next) {
+		return new IntOpPipeline(this, next);
+	}
 }
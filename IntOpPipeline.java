@@ -0,0 +1,101 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.*;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Chain of {@link IntOp IntOps} applied one after another, like {@code X2.then(X37)}.
+ * {@link #applyAsInt} calls all ops through one call site that sees as many receiver classes as there are
+ * distinct ops in the chain, while {@link #fuse()} compiles the chain into a kernel of its own.
+ */
+public final class IntOpPipeline implements IntUnaryOperator {
+	private static final MethodType COMPUTE_TYPE = MethodType.methodType(int.class, int.class);
+
+	private final IntOp[] ops;
+	private IntUnaryOperator fused;
+
+	IntOpPipeline(IntOp... ops) {
+		this.ops = ops.clone();
+	}
+
+	/**
+	 * Parses comma-separated names of ops, like {@code X2,X37}.
+	 */
+	public static IntOpPipeline parse(String s) {
+		String[] names = s.split(",");
+		IntOp[] ops = new IntOp[names.length];
+		for (int i = 0; i < names.length; i++)
+			ops[i] = IntOp.valueOf(names[i].trim().toUpperCase(Locale.US));
+		return new IntOpPipeline(ops);
+	}
+
+	public IntOpPipeline then(IntOp op) {
+		IntOp[] ops = Arrays.copyOf(this.ops, this.ops.length + 1);
+		ops[this.ops.length] = op;
+		return new IntOpPipeline(ops);
+	}
+
+	@Override
+	public int applyAsInt(int x) {
+		for (IntOp op : ops)
+			x = op.compute(x);
+		return x;
+	}
+
+	/**
+	 * All ops are multiplications, so the chain is a multiplication by the product of their factors.
+	 */
+	public int factor() {
+		int factor = 1;
+		for (IntOp op : ops)
+			factor *= op.factor();
+		return factor;
+	}
+
+	public int distinctOps() {
+		return EnumSet.copyOf(Arrays.asList(ops)).size();
+	}
+
+	/**
+	 * Returns the chain composed from method handles of its ops, bound to a hidden copy of {@link FusedIntOp},
+	 * so that the JIT sees it as a constant and inlines all ops into one specialized kernel.
+	 */
+	public synchronized IntUnaryOperator fuse() {
+		if (fused == null) {
+			try {
+				MethodHandles.Lookup lookup = MethodHandles.lookup();
+				MethodHandle kernel = MethodHandles.identity(int.class);
+				for (IntOp op : ops)
+					kernel = MethodHandles.filterReturnValue(kernel,
+							lookup.findVirtual(IntOp.class, "compute", COMPUTE_TYPE).bindTo(op));
+				MethodHandles.Lookup hidden = lookup.defineHiddenClassWithClassData(templateBytes(), kernel, true);
+				fused = (IntUnaryOperator)hidden.findConstructor(hidden.lookupClass(),
+						MethodType.methodType(void.class)).invoke();
+			} catch (Throwable e) {
+				throw new IllegalStateException("Cannot fuse " + this, e);
+			}
+		}
+		return fused;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		for (IntOp op : ops) {
+			if (sb.length() == 0)
+				sb.append(op);
+			else
+				sb.append(".then(").append(op).append(')');
+		}
+		return sb.toString();
+	}
+
+	private static byte[] templateBytes() throws IOException {
+		try (InputStream in = FusedIntOp.class.getResourceAsStream(FusedIntOp.class.getSimpleName() + ".class")) {
+			return in.readAllBytes();
+		}
+	}
+}
@@ -0,0 +1,156 @@
+import java.util.function.IntConsumer;
+
+/**
+ * Set of {@code int} values without boxing or per-element objects: one array with open addressing and
+ * linear probing, the same layout as keys of {@link IntIntMap}. Value {@code 0} marks a free slot,
+ * so its presence is kept in a separate field.
+ */
+public class IntSet {
+	private static final int FREE = 0;
+	static final int MAX_CAPACITY = 1 << 30;
+
+	private final float loadFactor;
+	private int[] keys;
+	private int size; // of elements in the array
+	private int threshold; // max size before the array is doubled
+	private boolean hasFreeKey;
+
+	public IntSet() {
+		this(16, 0.5f);
+	}
+
+	/**
+	 * Holds {@code expectedSize} elements without resizing and keeps at most {@code loadFactor} of slots occupied.
+	 */
+	public IntSet(int expectedSize, float loadFactor) {
+		if (!(loadFactor > 0 && loadFactor < 1))
+			throw new IllegalArgumentException("Load factor must be in (0, 1): " + loadFactor);
+		this.loadFactor = loadFactor;
+		allocate(capacityFor(expectedSize, loadFactor));
+	}
+
+	public int size() {
+		return size + (hasFreeKey ? 1 : 0);
+	}
+
+	public boolean contains(int key) {
+		if (key == FREE)
+			return hasFreeKey;
+		return keys[slot(key)] != FREE;
+	}
+
+	/**
+	 * Returns {@code true} when the key is new.
+	 */
+	public boolean add(int key) {
+		if (key == FREE) {
+			boolean added = !hasFreeKey;
+			hasFreeKey = true;
+			return added;
+		}
+		int i = slot(key);
+		if (keys[i] != FREE)
+			return false;
+		keys[i] = key;
+		if (++size > threshold)
+			allocate(keys.length * 2);
+		return true;
+	}
+
+	/**
+	 * Removes {@code key} with backward shift, see {@link IntIntMap#remove}.
+	 */
+	public boolean remove(int key) {
+		if (key == FREE) {
+			boolean removed = hasFreeKey;
+			hasFreeKey = false;
+			return removed;
+		}
+		int[] keys = this.keys;
+		int mask = keys.length - 1;
+		int i = slot(key);
+		if (keys[i] == FREE)
+			return false;
+		for (int j = (i + 1) & mask; keys[j] != FREE; j = (j + 1) & mask) {
+			int home = hash(keys[j]) & mask;
+			if (((j - home) & mask) >= ((j - i) & mask)) {
+				keys[i] = keys[j];
+				i = j;
+			}
+		}
+		keys[i] = FREE;
+		size--;
+		return true;
+	}
+
+	/**
+	 * Internal iteration over all elements in no particular order, without allocation.
+	 */
+	public void forEach(IntConsumer action) {
+		if (hasFreeKey)
+			action.accept(FREE);
+		int[] keys = this.keys;
+		for (int i = 0; i < keys.length; i++)
+			if (keys[i] != FREE)
+				action.accept(keys[i]);
+	}
+
+	/**
+	 * Approximate number of bytes used to store the elements, including free slots.
+	 */
+	public long byteSize() {
+		return keys.length * 4L;
+	}
+
+	/**
+	 * Spreads bits of the key over the high and low half, so that keys differing only in high bits,
+	 * like multiples of a power of two, do not collide in a power-of-two table.
+	 */
+	static int hash(int key) {
+		int h = key * 0x9e3779b9;
+		return h ^ (h >>> 16);
+	}
+
+	/**
+	 * Power of two number of slots that holds {@code expectedSize} keys below {@code loadFactor}.
+	 */
+	static int capacityFor(int expectedSize, float loadFactor) {
+		long min = (long)Math.ceil(Math.max(expectedSize, 1) / (double)loadFactor) + 1;
+		if (min > MAX_CAPACITY)
+			throw new IllegalArgumentException("Too many keys: " + expectedSize);
+		return Math.max(2, Integer.highestOneBit((int)min - 1) << 1);
+	}
+
+	private int slot(int key) {
+		int[] keys = this.keys;
+		int mask = keys.length - 1;
+		int i = hash(key) & mask;
+		while (keys[i] != FREE && keys[i] != key)
+			i = (i + 1) & mask;
+		return i;
+	}
+
+	private void allocate(int capacity) {
+		if (capacity > MAX_CAPACITY)
+			throw new IllegalStateException("Set is full");
+		int[] oldKeys = keys;
+		keys = new int[capacity];
+		threshold = Math.min(capacity - 1, (int)(capacity * loadFactor));
+		if (oldKeys == null)
+			return;
+		for (int key : oldKeys)
+			if (key != FREE)
+				keys[slot(key)] = key;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder("[");
+		forEach(key -> {
+			if (sb.length() > 1)
+				sb.append(", ");
+			sb.append(key);
+		});
+		return sb.append(']').toString();
+	}
+}
@@ -0,0 +1,83 @@
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Objects;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Explicitly vectorized summation with the preferred species of the Vector API.
+ * Run with {@code --add-modules jdk.incubator.vector}.
+ */
+class IntVectors {
+	static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+
+	public static int sum(int[] a, int from, int to) {
+		IntVector acc = IntVector.zero(SPECIES);
+		int i = from;
+		for (int bound = from + SPECIES.loopBound(to - from); i < bound; i += SPECIES.length())
+			acc = acc.add(IntVector.fromArray(SPECIES, a, i));
+		int sum = acc.reduceLanes(VectorOperators.ADD);
+		for (; i < to; i++)
+			sum += a[i];
+		return sum;
+	}
+
+	/**
+	 * Sum of {@code a[i] * factor}, which is {@code op.compute(a[i])} for {@code factor == op.factor()}.
+	 */
+	public static int sum(int[] a, int from, int to, int factor) {
+		if (factor == 1)
+			return sum(a, from, to);
+		IntVector acc = IntVector.zero(SPECIES);
+		int i = from;
+		for (int bound = from + SPECIES.loopBound(to - from); i < bound; i += SPECIES.length())
+			acc = acc.add(IntVector.fromArray(SPECIES, a, i).mul(factor));
+		int sum = acc.reduceLanes(VectorOperators.ADD);
+		for (; i < to; i++)
+			sum += a[i] * factor;
+		return sum;
+	}
+
+	/**
+	 * Sum of {@code x * factor} over ints with indices in {@code [from, to)} stored in the segment.
+	 */
+	public static int sum(MemorySegment segment, ByteOrder order, int from, int to, int factor) {
+		ValueLayout.OfInt layout = ValueLayout.JAVA_INT_UNALIGNED.withOrder(order);
+		IntVector acc = IntVector.zero(SPECIES);
+		int i = from;
+		for (int bound = from + SPECIES.loopBound(to - from); i < bound; i += SPECIES.length())
+			acc = acc.add(IntVector.fromMemorySegment(SPECIES, segment, i * 4L, order).mul(factor));
+		int sum = acc.reduceLanes(VectorOperators.ADD);
+		for (; i < to; i++)
+			sum += segment.get(layout, i * 4L) * factor;
+		return sum;
+	}
+
+	/**
+	 * Vectorized sum of {@code list.getInt(i) * factor} for the lists that keep their ints in an array,
+	 * a byte buffer or a memory segment. Falls back to {@link IntList#reduce} for the others.
+	 */
+	public static int sum(IntList list, int from, int to, int factor) {
+		Objects.checkFromToIndex(from, to, list.size());
+		if (list instanceof IntList.ViaJavaArray)
+			return sum(((IntList.ViaJavaArray)list).array(), from, to, factor);
+		if (list instanceof IntList.ViaByteBuffer1)
+			return sum(((IntList.ViaByteBuffer1)list).buffer(), from, to, factor);
+		if (list instanceof IntList.ViaByteBuffer2)
+			return sum(((IntList.ViaByteBuffer2)list).buffer(), from, to, factor);
+		if (list instanceof IntList.ViaByteBuffer3)
+			return sum(((IntList.ViaByteBuffer3)list).buffer(), from, to, factor);
+		if (list instanceof IntList.ViaMemorySegment)
+			return sum(((IntList.ViaMemorySegment)list).segment(), ByteOrder.nativeOrder(), from, to, factor);
+		return list.reduce(from, to, 0, (sum, x) -> sum + x * factor);
+	}
+
+	private static int sum(ByteBuffer buf, int from, int to, int factor) {
+		// segment must cover the whole buffer, not just what is left after the current position
+		return sum(MemorySegment.ofBuffer(buf.duplicate().clear()), buf.order(), from, to, factor);
+	}
+}
@@ -0,0 +1,83 @@
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Log-linear histogram of non-negative values (e.g. latencies in ns) with fixed buckets: values below
+ * {@code 2^SUB_BUCKET_BITS} are counted exactly, every higher power of two is split into {@code 2^SUB_BUCKET_BITS}
+ * equal sub-buckets, so relative error is below {@code 2^-SUB_BUCKET_BITS}.
+ * Recording does not allocate. Not thread-safe, each thread must record into its own instance.
+ */
+class LatencyHistogram {
+	private static final int SUB_BUCKET_BITS = 5;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+	private final long[] counts = new long[(64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS];
+	private long total;
+	private long max;
+
+	public void record(long value) {
+		if (value < 0)
+			value = 0;
+		counts[index(value)]++;
+		total++;
+		if (value > max)
+			max = value;
+	}
+
+	public void add(LatencyHistogram other) {
+		for (int i = 0; i < counts.length; i++)
+			counts[i] += other.counts[i];
+		total += other.total;
+		max = Math.max(max, other.max);
+	}
+
+	public void reset() {
+		Arrays.fill(counts, 0);
+		total = 0;
+		max = 0;
+	}
+
+	public long total() {
+		return total;
+	}
+
+	public long max() {
+		return max;
+	}
+
+	/**
+	 * Highest value of the bucket that contains the given percentile, or zero when nothing was recorded.
+	 */
+	public long percentile(double percentile) {
+		if (total == 0)
+			return 0;
+		long rank = Math.max(1, (long)Math.ceil(percentile / 100 * total));
+		long count = 0;
+		for (int i = 0; i < counts.length; i++) {
+			count += counts[i];
+			if (count >= rank)
+				return Math.min(max, highestValue(i));
+		}
+		return max;
+	}
+
+	@Override
+	public String toString() {
+		return String.format(Locale.US, "p50=%d p99=%d p999=%d max=%d", percentile(50), percentile(99), percentile(99.9), max);
+	}
+
+	private static int index(long value) {
+		if (value < SUB_BUCKETS)
+			return (int)value;
+		int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+		return (shift + 1) * SUB_BUCKETS + (int)(value >>> shift) - SUB_BUCKETS;
+	}
+
+	private static long highestValue(int index) {
+		if (index < SUB_BUCKETS)
+			return index;
+		int shift = index / SUB_BUCKETS - 1;
+		long top = SUB_BUCKETS + index % SUB_BUCKETS;
+		return ((top + 1) << shift) - 1;
+	}
+}
@@ -1,11 +1,21 @@
 import java.util.*;
 
 /**
- * Benchmark the difference between iteration on {@code LinkedList<Integer>} and {@code ArrayList<Integer>}.
+ * Benchmark the difference between iteration on {@code LinkedList<Integer>} and {@code ArrayList<Integer>},
+ * and a mixed workload of inserts and removals at random positions between iterations, where
+ * {@link IntList.ViaUnrolledList} joins them. All of them are iterated externally item by item in the mixed
+ * workload, and the unrolled list is also summed in blocks.
  * @author Roman Elizarov
  */
 public class ListIterationTiming {
 	private static final String[] CLASS_NAMES = new String[]{"java.util.LinkedList", "java.util.ArrayList"};
+	private static final String[] MIXED_CLASS_NAMES =
+			new String[]{"java.util.LinkedList", "java.util.ArrayList", "IntList$ViaUnrolledList"};
+	private static final int MIXED_UPDATES = 16; // inserts and as many removals per round
+	private static final int MIXED_ITEMS = 10000000; // iterated per timing
+	private static final int PASSES = 3; // 2 passes to let JIT compile everything, record the rest
+	private static final int STABLE_PASS = 3;
+	private static final int SAMPLES = 10; // timed repetitions per timing
 	private static int dummy; // to avoid HotSpot optimizing away iteration
 	private final List<Integer> list;
 
@@ -17,12 +27,22 @@ public class ListIterationTiming {
 			list.add(random.nextInt());
 	}
 
-	private double time() {
-		int reps = 100000000 / list.size();
-		long start = System.nanoTime();
-		for	(int rep = 0; rep < reps; rep++)
-			dummy += runIteration();
-		return (double)(System.nanoTime() - start) / reps / list.size();
+	/**
+	 * Iterates the list in {@code SAMPLES} timed repetitions and adds their times to {@code stats} when not null.
+	 */
+	private double time(Stats stats) {
+		int reps = Math.max(1, 100000000 / list.size() / SAMPLES);
+		long total = 0;
+		for (int sample = 0; sample < SAMPLES; sample++) {
+			long start = System.nanoTime();
+			for	(int rep = 0; rep < reps; rep++)
+				dummy += runIteration();
+			long time = System.nanoTime() - start;
+			if (stats != null)
+				stats.add((double)time / reps / list.size());
+			total += time;
+		}
+		return (double)total / SAMPLES / reps / list.size();
 	}
 
 	private int runIteration() {
@@ -32,13 +52,144 @@ public class ListIterationTiming {
 		return sum;
 	}
 
+	/**
+	 * Ordered collection under changes: each round inserts {@code MIXED_UPDATES} values and removes as many
+	 * at random positions, then iterates the whole list.
+	 */
+	static class Mixed {
+		private final List<Integer> list; // null for MutableIntList
+		private final MutableIntList intList;
+		private final Random random = new Random(2);
+
+		long items; // iterated by the last time() call
+		double updateTime; // ns per insert or removal
+		double iterationTime; // ns per item
+		double blockTime; // ns per item summed in blocks by IntList, NaN for List
+
+		@SuppressWarnings("unchecked")
+		Mixed(String className, int size) throws Exception {
+			Object instance = Class.forName(className).newInstance();
+			intList = instance instanceof MutableIntList ? (MutableIntList)instance : null;
+			list = intList == null ? (List<Integer>)instance : null;
+			Random random = new Random(1);
+			for (int i = 0; i < size; i++) {
+				if (intList != null)
+					intList.add(random.nextInt());
+				else
+					list.add(random.nextInt());
+			}
+		}
+
+		/**
+		 * Adds times of each round to {@code updateStats}, {@code iterationStats} and, for IntList,
+		 * {@code blockStats} when they are not null.
+		 */
+		void time(Stats updateStats, Stats iterationStats, Stats blockStats) {
+			int size = intList != null ? intList.size() : list.size();
+			int rounds = Math.max(1, MIXED_ITEMS / size);
+			long updates = 0;
+			long iterations = 0;
+			long blocks = 0;
+			for (int round = 0; round < rounds; round++) {
+				long start = System.nanoTime();
+				for (int i = 0; i < MIXED_UPDATES; i++) {
+					if (intList != null) {
+						intList.insert(random.nextInt(size + 1), random.nextInt());
+						intList.removeAt(random.nextInt(size + 1));
+					} else {
+						list.add(random.nextInt(size + 1), random.nextInt());
+						list.remove(random.nextInt(size + 1));
+					}
+				}
+				long mid = System.nanoTime();
+				dummy += sum();
+				long end = System.nanoTime();
+				if (intList != null) {
+					dummy += intList.sum(0, size);
+					long time = System.nanoTime() - end;
+					if (blockStats != null)
+						blockStats.add((double)time / size);
+					blocks += time;
+				}
+				if (updateStats != null) {
+					updateStats.add((double)(mid - start) / (2 * MIXED_UPDATES));
+					iterationStats.add((double)(end - mid) / size);
+				}
+				iterations += end - mid;
+				updates += mid - start;
+			}
+			items = (long)rounds * size;
+			updateTime = (double)updates / rounds / (2 * MIXED_UPDATES);
+			iterationTime = (double)iterations / items;
+			blockTime = intList != null ? (double)blocks / items : Double.NaN;
+		}
+
+		/**
+		 * External iteration, like the {@code Iterator} of {@code List}, also for IntList.
+		 */
+		private int sum() {
+			if (intList != null) {
+				IntList intList = this.intList;
+				int sum = 0;
+				for (int i = 0, n = intList.size(); i < n; i++)
+					sum += intList.getInt(i);
+				return sum;
+			}
+			int sum = 0;
+			for (Integer integer : list)
+				sum += integer;
+			return sum;
+		}
+	}
+
+	private static Stats stats(Map<String, Stats> stats, String name, int size) {
+		String key = name + "/" + size;
+		Stats s = stats.get(key);
+		if (s == null)
+			stats.put(key, s = new Stats());
+		return s;
+	}
+
 	public static void main(String[] args) throws Exception {
-		for (int pass = 1; pass <= 3; pass++) { // 2 passes to let JIT compile everything, look at 3rd
+		Map<String, Stats> stats = new HashMap<String, Stats>();
+		for (int pass = 1; pass <= PASSES; pass++) {
 			System.out.printf("----- PASS %d -----%n", pass);
+			boolean record = pass >= STABLE_PASS;
 			for (int size = 1000; size <= 1000000; size *= 10) {
 				for (String className : CLASS_NAMES) {
 					ListIterationTiming timing = new ListIterationTiming(className, size);
-					System.out.printf(Locale.US, "%20s[%7d]: %.2f ns per item%n", className, size, timing.time());
+					MemoryProbe probe = MemoryProbe.start();
+					double time = timing.time(record ? stats(stats, className, size) : null);
+					probe.stop();
+					System.out.printf(Locale.US, "%20s[%7d]: %.2f ns per item, %s%n", className, size, time,
+							probe.format((double)Math.max(1, 100000000 / size / SAMPLES) * SAMPLES * size));
+				}
+			}
+			for (int size = 1000; size <= 1000000; size *= 10) {
+				for (String className : MIXED_CLASS_NAMES) {
+					Mixed mixed = new Mixed(className, size);
+					MemoryProbe probe = MemoryProbe.start();
+					String name = "mixed/" + className;
+					mixed.time(record ? stats(stats, name + "/update", size) : null,
+							record ? stats(stats, name + "/item", size) : null,
+							record && mixed.intList != null ? stats(stats, name + "/block", size) : null);
+					probe.stop();
+					System.out.printf(Locale.US, "%23s[%7d]: mixed %.2f ns per update, %.2f ns per item%s, %s%n",
+							className, size, mixed.updateTime, mixed.iterationTime, Double.isNaN(mixed.blockTime) ? "" :
+							String.format(Locale.US, " (%.2f in blocks)", mixed.blockTime), probe.format(mixed.items));
+				}
+			}
+		}
+		try (Results results = Results.open(ListIterationTiming.class)) {
+			for (int size = 1000; size <= 1000000; size *= 10) {
+				for (String className : CLASS_NAMES)
+					results.record(className, size, 1, "ns/item", true, stats(stats, className, size));
+				for (String className : MIXED_CLASS_NAMES) {
+					String name = "mixed/" + className;
+					results.record(name, size, 1, "ns/update", true, stats(stats, name + "/update", size));
+					results.record(name, size, 1, "ns/item", true, stats(stats, name + "/item", size));
+					if (stats.containsKey(name + "/block/" + size))
+						results.record(name, size, 1, "ns/block-item", true, stats(stats, name + "/block", size));
 				}
 			}
 		}
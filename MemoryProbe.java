@@ -0,0 +1,95 @@
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.*;
+
+import com.sun.management.ThreadMXBean;
+
+/**
+ * Allocation and GC activity during one timed pass, shared by all harnesses. It samples bytes allocated by each
+ * benchmark thread and collection counts and times of all collectors when the pass starts and when it stops.
+ * A pass is distorted by GC when collections took more than {@code -DgcDistortion=<percent>} (default 1) of it.
+ */
+class MemoryProbe {
+	private static final double GC_DISTORTION = Double.parseDouble(System.getProperty("gcDistortion", "1"));
+
+	private static final ThreadMXBean THREADS = (ThreadMXBean)ManagementFactory.getThreadMXBean();
+	private static final List<GarbageCollectorMXBean> COLLECTORS = ManagementFactory.getGarbageCollectorMXBeans();
+
+	private final long[] threadIds;
+	private final long[] startBytes;
+	private final long startCollections;
+	private final long startCollectionTime;
+	private final long startNanos;
+
+	private long allocated = -1; // bytes, -1 when not supported for some thread, like a virtual one
+	private long collections;
+	private long collectionTime; // ms
+	private long nanos;
+
+	private MemoryProbe(long[] threadIds) {
+		this.threadIds = threadIds;
+		startCollections = totalCollections();
+		startCollectionTime = totalCollectionTime();
+		startBytes = THREADS.getThreadAllocatedBytes(threadIds);
+		startNanos = System.nanoTime();
+	}
+
+	/**
+	 * Starts probing the current thread.
+	 */
+	static MemoryProbe start() {
+		return start(Thread.currentThread().threadId());
+	}
+
+	static MemoryProbe start(long... threadIds) {
+		return new MemoryProbe(threadIds);
+	}
+
+	MemoryProbe stop() {
+		nanos = System.nanoTime() - startNanos;
+		long[] bytes = THREADS.getThreadAllocatedBytes(threadIds);
+		collections = totalCollections() - startCollections;
+		collectionTime = totalCollectionTime() - startCollectionTime;
+		allocated = 0;
+		for (int i = 0; i < threadIds.length; i++) {
+			if (bytes[i] < 0 || startBytes[i] < 0) {
+				allocated = -1;
+				break;
+			}
+			allocated += bytes[i] - startBytes[i];
+		}
+		return this;
+	}
+
+	long allocated() {
+		return allocated;
+	}
+
+	boolean isDistorted() {
+		return collectionTime * 1e6 > nanos * GC_DISTORTION / 100;
+	}
+
+	/**
+	 * Allocation per item of {@code items} processed during the pass, GC count and time, and a flag
+	 * when the pass was distorted by GC.
+	 */
+	String format(double items) {
+		return String.format(Locale.US, "%s bytes allocated per item, %d GCs in %d ms%s",
+				allocated < 0 ? "n/a" : String.format(Locale.US, "%.2f", allocated / items),
+				collections, collectionTime, isDistorted() ? " GC-DISTORTED" : "");
+	}
+
+	private static long totalCollections() {
+		long count = 0;
+		for (GarbageCollectorMXBean collector : COLLECTORS)
+			count += Math.max(0, collector.getCollectionCount());
+		return count;
+	}
+
+	private static long totalCollectionTime() {
+		long time = 0;
+		for (GarbageCollectorMXBean collector : COLLECTORS)
+			time += Math.max(0, collector.getCollectionTime());
+		return time;
+	}
+}
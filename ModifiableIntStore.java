@@ -0,0 +1,41 @@
+import java.util.Arrays;
+
+/**
+ * Struct-of-arrays alternative to a list of {@link ModifiableIntContainer}: values of all containers
+ * are flattened into one {@code int[]}. {@link #getC} and {@link #setC} copy like the container does,
+ * while {@link #getValue} and {@link #setValue} read and modify in place without allocating.
+ */
+public class ModifiableIntStore {
+    private int[] values = new int[16];
+    private int size;
+
+    public int size() {
+        return size;
+    }
+
+    public void add(ModifiableInt c) {
+        if (size >= values.length)
+            values = Arrays.copyOf(values, values.length * 2);
+        values[size++] = c.getValue();
+    }
+
+    public ModifiableInt getC(int index) {
+        return new ModifiableInt(getValue(index));
+    }
+
+    public void setC(int index, ModifiableInt c) {
+        setValue(index, c.getValue());
+    }
+
+    public int getValue(int index) {
+        if (index >= size)
+            throw new IndexOutOfBoundsException();
+        return values[index];
+    }
+
+    public void setValue(int index, int value) {
+        if (index >= size)
+            throw new IndexOutOfBoundsException();
+        values[index] = value;
+    }
+}
@@ -1,8 +1,17 @@
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 import java.util.Random;
 
+import com.sun.management.HotSpotDiagnosticMXBean;
+
 /**
+ * Sums values of containers that copy defensively, of immutable containers and of a flattened store,
+ * and reports bytes allocated per element next to time, which shows whether escape analysis removed
+ * the copies. Run with {@code -XX:-DoEscapeAnalysis} to see the allocations it removes.
+ *
  * @author Roman Elizarov
  */
 public class ModifiableIntSum {
@@ -11,35 +20,99 @@ public class ModifiableIntSum {
     private static final int N = 100000;
     private static final int REPS = 1000;
 
-    public static void main(String[] args) {
+    enum Variant {
+        COPY, IMMUTABLE, STORE;
+
+        String key() {
+            return name().toLowerCase(Locale.US);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        System.out.println("DoEscapeAnalysis=" + ManagementFactory.getPlatformMXBean(HotSpotDiagnosticMXBean.class)
+                .getVMOption("DoEscapeAnalysis").getValue());
         ModifiableIntSum mis = new ModifiableIntSum();
+        Variant[] variants = Variant.values();
+        Stats[] timeStats = new Stats[variants.length];
+        Stats[] allocStats = new Stats[variants.length];
+        for (int v = 0; v < variants.length; v++) {
+            timeStats[v] = new Stats();
+            allocStats[v] = new Stats();
+        }
         for (int pass = 1; pass <= PASSES; pass++) {
             System.out.printf("----- PASS %d -----%n", pass);
-            long startTime = System.currentTimeMillis();
-            int sum = mis.run();
-            System.out.printf("Done %d ms (sum=%d)%n", System.currentTimeMillis() - startTime, sum);
+            for (int v = 0; v < variants.length; v++) {
+                MemoryProbe probe = MemoryProbe.start();
+                long startTime = System.currentTimeMillis();
+                int sum = mis.run(variants[v]);
+                long time = System.currentTimeMillis() - startTime;
+                probe.stop();
+                double bytes = (double)probe.allocated() / ((long)N * REPS);
+                System.out.printf(Locale.US, "%-9s: done %d ms, %s (sum=%d)%n",
+                        variants[v].key(), time, probe.format((double)N * REPS), sum);
+                if (pass > 1) { // the first pass is JIT warm-up
+                    timeStats[v].add(time);
+                    allocStats[v].add(bytes);
+                }
+            }
+        }
+        try (Results results = Results.open(ModifiableIntSum.class)) {
+            for (int v = 0; v < variants.length; v++) {
+                results.record(variants[v].key(), N, 1, "ms/pass", true, timeStats[v]);
+                results.record(variants[v].key(), N, 1, "bytes/element", true, allocStats[v]);
+            }
         }
     }
 
     private final List<ModifiableIntContainer> list = new ArrayList<>();
+    private final List<ImmutableIntContainer> immutableList = new ArrayList<>();
+    private final ModifiableIntStore store = new ModifiableIntStore();
 
-    private ModifiableIntSum() {
+    ModifiableIntSum() {
         Random r = new Random(1);
-        for (int i = 0; i < N; i++)
-            list.add(new ModifiableIntContainer(new ModifiableInt(r.nextInt())));
+        for (int i = 0; i < N; i++) {
+            ModifiableInt c = new ModifiableInt(r.nextInt());
+            list.add(new ModifiableIntContainer(c));
+            immutableList.add(new ImmutableIntContainer(new ImmutableInt(c.getValue())));
+            store.add(c);
+        }
     }
 
-    private int run() {
+    private int run(Variant variant) {
         int sum = 0;
         for (int rep = 0; rep < REPS; rep++)
-            sum += runIteration();
+            sum += runIteration(variant);
         return sum;
     }
 
-    private int runIteration() {
+    int runIteration(Variant variant) {
+        switch (variant) {
+            case COPY: return runIteration();
+            case IMMUTABLE: return runImmutableIteration();
+            case STORE: return runStoreIteration();
+            default: throw new IllegalArgumentException(variant.toString());
+        }
+    }
+
+    int runIteration() {
         int sum = 0;
         for (ModifiableIntContainer container : list)
             sum += container.getC().getValue();
         return sum;
     }
+
+    int runImmutableIteration() {
+        int sum = 0;
+        for (ImmutableIntContainer container : immutableList)
+            sum += container.getC().getValue();
+        return sum;
+    }
+
+    int runStoreIteration() {
+        ModifiableIntStore store = this.store;
+        int sum = 0;
+        for (int i = 0, n = store.size(); i < n; i++)
+            sum += store.getValue(i);
+        return sum;
+    }
 }
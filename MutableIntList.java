@@ -0,0 +1,16 @@
+/**
+ * {@link IntList} that also inserts and removes elements at any index. It is a separate interface, so that
+ * append-only implementations do not carry stubs, and it is not nested in {@link IntList}, so that harnesses
+ * listing implementations with {@code IntList.class.getDeclaredClasses()} do not see it.
+ */
+public interface MutableIntList extends IntList {
+	/**
+	 * Inserts {@code value} at {@code index} in {@code [0, size()]}, moving the following elements up by one.
+	 */
+	public void insert(int index, int value);
+
+	/**
+	 * Removes and returns the element at {@code index}, moving the following elements down by one.
+	 */
+	public int removeAt(int index);
+}
@@ -0,0 +1,136 @@
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Locale;
+
+import com.sun.management.HotSpotDiagnosticMXBean;
+import sun.misc.Unsafe;
+
+/**
+ * Portable probe of object addresses and layout in HotSpot heap via {@link Unsafe}.
+ * Replaces JNI code that dereferenced handles, which is wrong with compressed oops.
+ */
+class ObjectLayout {
+	private static final Unsafe UNSAFE = getUnsafe();
+	private static final long OBJECT_ARRAY_BASE = UNSAFE.arrayBaseOffset(Object[].class);
+
+	/**
+	 * {@code true} when references in heap are 32 bits.
+	 */
+	static final boolean COMPRESSED_OOPS = UNSAFE.arrayIndexScale(Object[].class) == 4;
+	static final int OBJECT_ALIGNMENT = getVMOption("ObjectAlignmentInBytes", 8);
+	/**
+	 * Decoded address is {@code base + (narrowOop << OOP_SHIFT)}.
+	 * Shift is zero when the whole heap fits below 4 GB, and {@code log2(OBJECT_ALIGNMENT)} otherwise.
+	 */
+	static final int OOP_SHIFT = COMPRESSED_OOPS ? detectOopShift() : 0;
+	static final int HEADER_SIZE = (int)UNSAFE.objectFieldOffset(getField(HeaderProbe.class, "b"));
+
+	private static class HeaderProbe {
+		byte b;
+	}
+
+	private ObjectLayout() {}
+
+	/**
+	 * Current address of the object. Compressed oops are decoded without the heap base, which is
+	 * zero unless the heap is above 32 GB and is aligned well beyond any page size anyway.
+	 * The result is valid only until the next GC moves the object.
+	 */
+	static long addressOf(Object obj) {
+		Object[] array = { obj };
+		if (COMPRESSED_OOPS)
+			return (UNSAFE.getInt(array, OBJECT_ARRAY_BASE) & 0xffffffffL) << OOP_SHIFT;
+		return UNSAFE.getLong(array, OBJECT_ARRAY_BASE);
+	}
+
+	static long fieldOffset(Class<?> c, String name) {
+		return UNSAFE.objectFieldOffset(getField(c, name));
+	}
+
+	/**
+	 * Size of an instance of the class (without referenced objects), rounded up to object alignment.
+	 */
+	static long shallowSize(Class<?> c) {
+		long end = HEADER_SIZE;
+		for (; c != null; c = c.getSuperclass())
+			for (Field f : c.getDeclaredFields())
+				if (!Modifier.isStatic(f.getModifiers()))
+					end = Math.max(end, UNSAFE.objectFieldOffset(f) + sizeOf(f.getType()));
+		return (end + OBJECT_ALIGNMENT - 1) / OBJECT_ALIGNMENT * OBJECT_ALIGNMENT;
+	}
+
+	static String describe(Class<?> c) {
+		StringBuilder sb = new StringBuilder();
+		sb.append(String.format(Locale.US, "%s: %d bytes", c.getName(), shallowSize(c)));
+		for (Field f : c.getDeclaredFields())
+			if (!Modifier.isStatic(f.getModifiers()))
+				sb.append(String.format(Locale.US, ", %s %s @ %d", f.getType().getSimpleName(), f.getName(),
+						UNSAFE.objectFieldOffset(f)));
+		return sb.toString();
+	}
+
+	static void printLayout(Class<?>... classes) {
+		System.out.printf(Locale.US, "compressed oops: %s (shift %d), header: %d bytes, alignment: %d bytes%n",
+				COMPRESSED_OOPS, OOP_SHIFT, HEADER_SIZE, OBJECT_ALIGNMENT);
+		for (Class<?> c : classes)
+			System.out.println(describe(c));
+	}
+
+	public static void main(String[] args) {
+		printLayout(Integer.class, ModifiableInt.class);
+	}
+
+	private static int sizeOf(Class<?> type) {
+		if (type == long.class || type == double.class)
+			return 8;
+		if (type == int.class || type == float.class)
+			return 4;
+		if (type == short.class || type == char.class)
+			return 2;
+		if (type == byte.class || type == boolean.class)
+			return 1;
+		return COMPRESSED_OOPS ? 4 : 8;
+	}
+
+	/**
+	 * Without shift every narrow oop is a multiple of object alignment, while with shift
+	 * consecutive small objects land on consecutive narrow values.
+	 */
+	private static int detectOopShift() {
+		Object[] array = new Object[1];
+		for (int i = 0; i < 1000; i++) {
+			array[0] = new Object();
+			if ((UNSAFE.getInt(array, OBJECT_ARRAY_BASE) & (OBJECT_ALIGNMENT - 1)) != 0)
+				return Integer.numberOfTrailingZeros(OBJECT_ALIGNMENT);
+		}
+		return 0;
+	}
+
+	private static int getVMOption(String name, int defaultValue) {
+		try {
+			HotSpotDiagnosticMXBean bean = ManagementFactory.getPlatformMXBean(HotSpotDiagnosticMXBean.class);
+			return Integer.parseInt(bean.getVMOption(name).getValue());
+		} catch (Exception e) {
+			return defaultValue;
+		}
+	}
+
+	private static Field getField(Class<?> c, String name) {
+		try {
+			return c.getDeclaredField(name);
+		} catch (NoSuchFieldException e) {
+			throw new IllegalArgumentException(e);
+		}
+	}
+
+	private static Unsafe getUnsafe() {
+		try {
+			Field f = Unsafe.class.getDeclaredField("theUnsafe");
+			f.setAccessible(true);
+			return (Unsafe)f.get(null);
+		} catch (Exception e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+}
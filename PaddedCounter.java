@@ -0,0 +1,32 @@
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * Counter that is written by one thread and polled by others, padded on both sides to a cache line of its own,
+ * so that writes of different threads to their counters do not invalidate each other's lines.
+ * Padding is done via class hierarchy, because HotSpot does not reorder fields across classes.
+ */
+class PaddedCounter extends PaddedCounterValue {
+	private static final AtomicLongFieldUpdater<PaddedCounterValue> VALUE =
+			AtomicLongFieldUpdater.newUpdater(PaddedCounterValue.class, "value");
+
+	long p10, p11, p12, p13, p14, p15, p16, p17;
+
+	public long get() {
+		return value;
+	}
+
+	/**
+	 * Ordered store without a full fence, for the only writer of this counter.
+	 */
+	public void lazySet(long value) {
+		VALUE.lazySet(this, value);
+	}
+}
+
+abstract class PaddedCounterValue extends PaddedCounterLhs {
+	volatile long value;
+}
+
+abstract class PaddedCounterLhs {
+	long p00, p01, p02, p03, p04, p05, p06, p07;
+}
@@ -0,0 +1,211 @@
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.FunctionDescriptor;
+import java.lang.foreign.Linker;
+import java.lang.foreign.MemorySegment;
+import java.lang.invoke.MethodHandle;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+
+import com.sun.management.HotSpotDiagnosticMXBean;
+
+import static java.lang.foreign.ValueLayout.ADDRESS;
+import static java.lang.foreign.ValueLayout.JAVA_INT;
+import static java.lang.foreign.ValueLayout.JAVA_LONG;
+
+/**
+ * Off-heap memory backed by small or huge pages, and the page sizes that are actually in effect.
+ * Transparent huge pages are requested and refused with {@code madvise(2)}, while the page sizes come
+ * from {@code /proc/self/smaps}, so both work on Linux only and degrade to no-ops and "unknown" elsewhere.
+ * Page sizes of the Java heap itself are chosen with {@code -XX:+UseLargePages} or
+ * {@code -XX:+UseTransparentHugePages} when the JVM starts.
+ */
+class PageMemory {
+	static final long SMALL_PAGE = 4L << 10;
+	static final long HUGE_PAGE = 2L << 20;
+
+	private static final int MADV_HUGEPAGE = 14;
+	private static final int MADV_NOHUGEPAGE = 15;
+	private static final int MADV_DONTNEED = 4;
+
+	private static final Path SMAPS = Paths.get("/proc/self/smaps");
+	private static final Path THP_ENABLED = Paths.get("/sys/kernel/mm/transparent_hugepage/enabled");
+
+	private static final MethodHandle MADVISE = madvise();
+
+	/**
+	 * One mapping of {@code /proc/self/smaps}.
+	 */
+	static class Mapping {
+		final long start;
+		final long end;
+		final String perms; // like rw-p, where ---p is reserved but not committed
+		final String path; // empty for anonymous memory
+		long kernelPageSize; // bytes
+		long anonHugePages; // bytes
+
+		Mapping(long start, long end, String perms, String path) {
+			this.start = start;
+			this.end = end;
+			this.perms = perms;
+			this.path = path;
+		}
+
+		/**
+		 * Committed private anonymous memory, where the heap and off-heap allocations live.
+		 */
+		boolean isCommittedAnonymous() {
+			return perms.equals("rw-p") && path.isEmpty();
+		}
+
+		boolean overlaps(MemorySegment segment) {
+			return segment.address() < end && segment.address() + segment.byteSize() > start;
+		}
+
+		@Override
+		public String toString() {
+			return format(CacheProfiler.formatBytes(kernelPageSize), anonHugePages, end - start);
+		}
+	}
+
+	/**
+	 * Allocates {@code bytes} aligned to {@code HUGE_PAGE} and asks for transparent huge pages when {@code huge},
+	 * or aligned to {@code SMALL_PAGE} and refuses them otherwise. The arena zero-fills and so backs the pages
+	 * before the advice is given, so they are dropped with {@code MADV_DONTNEED} after it and backed again
+	 * by touching them, which returns zeros. Pages are backed when this method returns, and a warning shows
+	 * how much of a huge request the kernel refused.
+	 */
+	static MemorySegment allocate(Arena arena, long bytes, boolean huge) {
+		long pageSize = huge ? HUGE_PAGE : SMALL_PAGE;
+		MemorySegment segment = arena.allocate((bytes + pageSize - 1) / pageSize * pageSize, pageSize);
+		if (MADVISE != null) {
+			madvise(segment, huge ? MADV_HUGEPAGE : MADV_NOHUGEPAGE);
+			madvise(segment, MADV_DONTNEED);
+			segment.fill((byte)0);
+			long obtained = anonHugePages(segment);
+			if (huge && obtained < segment.byteSize())
+				System.err.printf("Only %d of %d MB in huge pages%n", obtained >> 20, segment.byteSize() >> 20);
+		}
+		return segment.asSlice(0, bytes);
+	}
+
+	private static void madvise(MemorySegment segment, int advice) {
+		try {
+			int result = (int)MADVISE.invokeExact(segment, segment.byteSize(), advice);
+			if (result != 0)
+				System.err.println("madvise " + advice + " failed for " + CacheProfiler.formatBytes(segment.byteSize()));
+		} catch (Throwable e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Page sizes of the mappings that overlap {@code segment}. Advice can split one allocation into several.
+	 */
+	static String pageSize(MemorySegment segment) {
+		Set<String> pageSizes = new TreeSet<String>();
+		for (Mapping mapping : mappings())
+			if (mapping.overlaps(segment))
+				pageSizes.add(CacheProfiler.formatBytes(mapping.kernelPageSize));
+		if (pageSizes.isEmpty())
+			return "unknown";
+		return format(String.join("/", pageSizes), anonHugePages(segment), segment.byteSize());
+	}
+
+	/**
+	 * Bytes of transparent huge pages in the mappings that overlap {@code segment}.
+	 */
+	static long anonHugePages(MemorySegment segment) {
+		long bytes = 0;
+		for (Mapping mapping : mappings())
+			if (mapping.overlaps(segment))
+				bytes += mapping.anonHugePages;
+		return bytes;
+	}
+
+	/**
+	 * JVM flags and kernel mode for huge pages and page sizes of the committed heap. The heap is reserved
+	 * as one large inaccessible mapping and committed in parts, so its page sizes are summed over committed
+	 * anonymous mappings except those that overlap {@code offHeap} segments. Other native memory of the JVM
+	 * is counted as well, which is small next to a heap that holds large arrays.
+	 */
+	static String heapPageSize(Collection<MemorySegment> offHeap) {
+		HotSpotDiagnosticMXBean hotspot = ManagementFactory.getPlatformMXBean(HotSpotDiagnosticMXBean.class);
+		StringBuilder sb = new StringBuilder();
+		for (String flag : new String[] { "UseLargePages", "UseTransparentHugePages" })
+			sb.append(flag).append('=').append(hotspot.getVMOption(flag).getValue()).append(", ");
+		sb.append("THP ").append(thpMode()).append(", ");
+		Set<String> pageSizes = new TreeSet<String>();
+		long anonHugePages = 0;
+		long bytes = 0;
+		mappings:
+		for (Mapping mapping : mappings()) {
+			if (!mapping.isCommittedAnonymous())
+				continue;
+			for (MemorySegment segment : offHeap)
+				if (mapping.overlaps(segment))
+					continue mappings;
+			pageSizes.add(CacheProfiler.formatBytes(mapping.kernelPageSize));
+			anonHugePages += mapping.anonHugePages;
+			bytes += mapping.end - mapping.start;
+		}
+		sb.append(pageSizes.isEmpty() ? "unknown" : format(String.join("/", pageSizes), anonHugePages, bytes));
+		return sb.toString();
+	}
+
+	private static String format(String pageSizes, long anonHugePages, long bytes) {
+		return String.format(Locale.US, "%s pages, %d of %d MB in huge pages", pageSizes, anonHugePages >> 20, bytes >> 20);
+	}
+
+	static String thpMode() {
+		try {
+			String s = new String(Files.readAllBytes(THP_ENABLED)).trim();
+			int i = s.indexOf('[');
+			int j = s.indexOf(']');
+			return i >= 0 && j > i ? s.substring(i + 1, j) : s;
+		} catch (IOException e) {
+			return "unknown";
+		}
+	}
+
+	static List<Mapping> mappings() {
+		List<Mapping> result = new ArrayList<Mapping>();
+		List<String> lines;
+		try {
+			lines = Files.readAllLines(SMAPS);
+		} catch (IOException e) {
+			return result;
+		}
+		Mapping mapping = null;
+		for (String line : lines) {
+			int colon = line.indexOf(':');
+			int dash = line.indexOf('-');
+			if (dash > 0 && (colon < 0 || dash < colon) && line.indexOf(' ') > dash) {
+				// address perms offset dev inode [path]
+				String[] fields = line.trim().split("\\s+", 6);
+				String[] range = fields[0].split("-");
+				mapping = new Mapping(Long.parseUnsignedLong(range[0], 16), Long.parseUnsignedLong(range[1], 16),
+						fields[1], fields.length > 5 ? fields[5] : "");
+				result.add(mapping);
+			} else if (mapping != null && line.startsWith("KernelPageSize:"))
+				mapping.kernelPageSize = kilobytes(line) << 10;
+			else if (mapping != null && line.startsWith("AnonHugePages:"))
+				mapping.anonHugePages = kilobytes(line) << 10;
+		}
+		return result;
+	}
+
+	private static long kilobytes(String line) {
+		return Long.parseLong(line.substring(line.indexOf(':') + 1).replace("kB", "").trim());
+	}
+
+	private static MethodHandle madvise() {
+		Linker linker = Linker.nativeLinker();
+		Optional<MemorySegment> address = linker.defaultLookup().find("madvise");
+		return address.map(a -> linker.downcallHandle(a, FunctionDescriptor.of(JAVA_INT, ADDRESS, JAVA_LONG, JAVA_INT)))
+				.orElse(null);
+	}
+}
@@ -0,0 +1,146 @@
+import java.io.BufferedReader;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.SimpleDateFormat;
+import java.util.*;
+
+/**
+ * Machine-readable store of benchmark results shared by all harnesses. Each result is one CSV line with
+ * the summary of its {@link Stats} and the environment it was measured in (JVM, its flags, CPU count and
+ * git revision), so that files from different runs can be concatenated and compared with {@link ResultsCompare}.
+ * Results go to {@code -Dresults=<file>} (appended) or to {@code <harness>-<date>.csv} in the current directory.
+ */
+class Results implements AutoCloseable {
+	static final String[] COLUMNS = { "harness", "case", "size", "threads", "metric", "better",
+			"n", "mean", "dev", "median", "min", "max", "jvm", "flags", "cpus", "git", "time" };
+
+	private static final String RESULTS = System.getProperty("results");
+
+	private final String harness;
+	private final PrintWriter out;
+	private final String[] env;
+
+	private Results(String harness, PrintWriter out) {
+		this.harness = harness;
+		this.out = out;
+		env = new String[] {
+			System.getProperty("java.vm.vendor") + " " + System.getProperty("java.vm.name") + " " +
+					System.getProperty("java.runtime.version"),
+			String.join(" ", ManagementFactory.getRuntimeMXBean().getInputArguments()),
+			String.valueOf(Runtime.getRuntime().availableProcessors()),
+			gitRevision(),
+			new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss").format(new Date())
+		};
+	}
+
+	static Results open(Class<?> harnessClass) throws IOException {
+		String harness = harnessClass.getSimpleName();
+		Path file = Paths.get(RESULTS != null ? RESULTS :
+				harness + "-" + new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date()) + ".csv");
+		boolean exists = Files.exists(file) && Files.size(file) > 0;
+		PrintWriter out = new PrintWriter(new FileOutputStream(file.toFile(), true), true);
+		if (!exists)
+			out.println(String.join(",", COLUMNS));
+		return new Results(harness, out);
+	}
+
+	/**
+	 * Records one result, where {@code metric} names the measured value with its unit, like {@code ns/item}.
+	 */
+	void record(String name, long size, int threads, String metric, boolean lowerIsBetter, Stats stats) {
+		if (stats.n() == 0)
+			return;
+		List<String> row = new ArrayList<String>(Arrays.asList(harness, name, String.valueOf(size),
+				String.valueOf(threads), metric, lowerIsBetter ? "lower" : "higher", String.valueOf(stats.n()),
+				format(stats.mean()), format(stats.n() > 1 ? stats.dev() : 0), format(stats.median()),
+				format(stats.min()), format(stats.max())));
+		row.addAll(Arrays.asList(env));
+		StringBuilder sb = new StringBuilder();
+		for (String s : row) {
+			if (sb.length() > 0)
+				sb.append(',');
+			sb.append(quote(s));
+		}
+		out.println(sb);
+	}
+
+	@Override
+	public void close() {
+		out.close();
+	}
+
+	/**
+	 * Reads all rows of a results file as maps from column names to values.
+	 */
+	static List<Map<String, String>> read(Path file) throws IOException {
+		List<String> lines = Files.readAllLines(file);
+		List<Map<String, String>> rows = new ArrayList<Map<String, String>>();
+		if (lines.isEmpty())
+			return rows;
+		List<String> header = parseLine(lines.get(0));
+		for (String line : lines.subList(1, lines.size())) {
+			if (line.isEmpty() || line.equals(lines.get(0)))
+				continue; // files appended to each other repeat the header
+			List<String> values = parseLine(line);
+			Map<String, String> row = new HashMap<String, String>();
+			for (int i = 0; i < header.size() && i < values.size(); i++)
+				row.put(header.get(i), values.get(i));
+			rows.add(row);
+		}
+		return rows;
+	}
+
+	private static List<String> parseLine(String line) {
+		List<String> values = new ArrayList<String>();
+		StringBuilder sb = new StringBuilder();
+		boolean quoted = false;
+		for (int i = 0; i < line.length(); i++) {
+			char c = line.charAt(i);
+			if (quoted) {
+				if (c != '"')
+					sb.append(c);
+				else if (i + 1 < line.length() && line.charAt(i + 1) == '"')
+					sb.append(line.charAt(++i));
+				else
+					quoted = false;
+			} else if (c == '"')
+				quoted = true;
+			else if (c == ',') {
+				values.add(sb.toString());
+				sb.setLength(0);
+			} else
+				sb.append(c);
+		}
+		values.add(sb.toString());
+		return values;
+	}
+
+	private static String quote(String s) {
+		if (s.indexOf(',') < 0 && s.indexOf('"') < 0)
+			return s;
+		return '"' + s.replace("\"", "\"\"") + '"';
+	}
+
+	private static String format(double x) {
+		return String.format(Locale.US, "%.6g", x);
+	}
+
+	private static String gitRevision() {
+		try {
+			Process p = new ProcessBuilder("git", "describe", "--always", "--dirty").redirectErrorStream(true).start();
+			String line;
+			try (BufferedReader in = new BufferedReader(new InputStreamReader(p.getInputStream()))) {
+				line = in.readLine();
+			}
+			return p.waitFor() == 0 && line != null ? line : "unknown";
+		} catch (Exception e) {
+			return "unknown";
+		}
+	}
+}
@@ -0,0 +1,109 @@
+import java.nio.file.Paths;
+import java.util.*;
+
+/**
+ * Compares two sets of {@link Results} and flags statistically significant slowdowns per harness, case,
+ * size and thread count with Welch's t-test at 95% confidence. Exits with status 1 when there are any.
+ */
+public class ResultsCompare {
+	private static final double THRESHOLD = Double.parseDouble(System.getProperty("threshold", "1"));
+
+	/**
+	 * Pooled measurements of all rows with the same key.
+	 */
+	static class Cell {
+		boolean lowerIsBetter;
+		long n;
+		double mean;
+		double nvar;
+		Set<String> envs = new TreeSet<String>();
+
+		void add(Map<String, String> row) {
+			long m = Long.parseLong(row.get("n"));
+			double rowMean = Double.parseDouble(row.get("mean"));
+			double rowDev = Double.parseDouble(row.get("dev"));
+			lowerIsBetter = row.get("better").equals("lower");
+			long total = n + m;
+			double delta = rowMean - mean;
+			mean += delta * m / total;
+			nvar += rowDev * rowDev * (m - 1) + delta * delta * ((double)n * m / total);
+			n = total;
+			envs.add(row.get("jvm") + " | " + row.get("flags") + " | " + row.get("cpus") + " cpus | " + row.get("git"));
+		}
+
+		double var() {
+			return nvar / (n - 1);
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		if (args.length != 2) {
+			System.err.println("Usage: " + ResultsCompare.class + " <baseline> <candidate>");
+			System.err.println("Where: <baseline>  is a results file of a harness run with -Dresults=<file>, or the default one.");
+			System.err.println("       <candidate> is a results file to compare with the baseline.");
+			System.err.println("Use -Dthreshold=<percent> to ignore significant changes smaller than <percent> (default 1).");
+			return;
+		}
+		Map<String, Cell> baseline = load(args[0]);
+		Map<String, Cell> candidate = load(args[1]);
+		printEnvs("baseline ", baseline);
+		printEnvs("candidate", candidate);
+
+		int slower = 0;
+		int faster = 0;
+		for (Map.Entry<String, Cell> e : candidate.entrySet()) {
+			Cell b = baseline.get(e.getKey());
+			if (b == null)
+				continue;
+			Cell c = e.getValue();
+			double change = (c.mean - b.mean) * 100 / b.mean;
+			String verdict;
+			if (b.n < 2 || c.n < 2)
+				verdict = "n/a";
+			else {
+				double se2b = b.var() / b.n;
+				double se2c = c.var() / c.n;
+				double t = (c.mean - b.mean) / Math.sqrt(se2b + se2c);
+				// Welch-Satterthwaite degrees of freedom
+				double df = (se2b + se2c) * (se2b + se2c) / (se2b * se2b / (b.n - 1) + se2c * se2c / (c.n - 1));
+				boolean significant = Math.abs(t) > Stats.t975((int)Math.max(1, Math.floor(df))) &&
+						Math.abs(change) >= THRESHOLD;
+				boolean worse = c.lowerIsBetter ? c.mean > b.mean : c.mean < b.mean;
+				if (!significant)
+					verdict = "~";
+				else if (worse) {
+					verdict = "SLOWER";
+					slower++;
+				} else {
+					verdict = "faster";
+					faster++;
+				}
+			}
+			System.out.printf(Locale.US, "%-70s %12.4g -> %12.4g %+8.2f%% %s%n", e.getKey(), b.mean, c.mean, change, verdict);
+		}
+		System.out.printf("%d slower, %d faster%n", slower, faster);
+		if (slower > 0)
+			System.exit(1);
+	}
+
+	private static Map<String, Cell> load(String file) throws Exception {
+		Map<String, Cell> cells = new TreeMap<String, Cell>();
+		for (Map<String, String> row : Results.read(Paths.get(file))) {
+			String key = row.get("harness") + " " + row.get("case") + "[" + row.get("size") + "] #" +
+					row.get("threads") + " " + row.get("metric");
+			Cell cell = cells.get(key);
+			if (cell == null)
+				cells.put(key, cell = new Cell());
+			cell.add(row);
+		}
+		return cells;
+	}
+
+	private static void printEnvs(String name, Map<String, Cell> cells) {
+		Set<String> envs = new TreeSet<String>();
+		for (Cell cell : cells.values())
+			envs.addAll(cell.envs);
+		for (String env : envs)
+			System.out.printf("%s: %s%n", name, env);
+	}
+}
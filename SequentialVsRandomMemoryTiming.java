@@ -1,8 +1,22 @@
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.stream.IntStream;
+
+import static java.lang.foreign.ValueLayout.JAVA_INT;
 
 /**
  * Compare sequential vs random memory access of 32 bits ints on the same simple code.
+ * Run with {@code --add-modules jdk.incubator.vector} for the {@code simd} test, which is skipped without it,
+ * and with {@code -Dmlp=true} to time K independent random chains for K up to 32, which shows how much
+ * memory-level parallelism random lookups need to approach sequential bandwidth. Run with {@code -Dscaling=true} to sweep parallelism
+ * of the summation from 1 to the number of CPUs with different split thresholds, {@code IntStream.parallel()}
+ * and manually partitioned threads, which shows the thread count where memory bandwidth saturates.
+ * Run with {@code -Dpages=true} to time random, sequential and dependent random access on the heap and on
+ * off-heap copies backed by small and by transparent huge pages, which separates TLB misses from cache misses.
+ * Compare runs with and without {@code -XX:+UseTransparentHugePages} or {@code -XX:+UseLargePages} for the heap.
  *
  * @author Roman Elizarov
  */
@@ -17,7 +31,18 @@ public class SequentialVsRandomMemoryTiming {
 	private static final boolean SMALL_STEPS = Boolean.getBoolean("smallSteps");
 	private static final int MAX_SMALL_STEP = 25;
 
+	private static final boolean MLP = Boolean.getBoolean("mlp");
+	private static final int[] CHAINS = { 1, 2, 3, 4, 6, 8, 12, 16, 24, 32 };
+	private static final int MILESTONES = 1024;
+
+	private static final boolean PAGES = Boolean.getBoolean("pages");
+
+	private static final boolean SIMD = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+
 	private final int[] a = new int[N];
+	private int[] next; // random single cycle through all indices, only for MLP tests
+	private int[] milestones; // every (N / MILESTONES)-th index along the cycle
+	private int dummy; // to avoid HotSpot optimizing away scaling sums
 
 	AnyStep rnd = new AnyStep(RND_STEP);
 	AnyStep seq = new AnyStep(1);
@@ -29,11 +54,24 @@ public class SequentialVsRandomMemoryTiming {
 	private final Test sp2 = new Split2();
 	private final Test sp3 = new Split3();
 	private final Test par = new Parallel();
+	private final Test simd = SIMD ? new Simd() : null;
+
+	private final Test[] chains = new Test[CHAINS.length];
+	private final Test[] gathers = new Test[CHAINS.length];
+
+	private final List<Backing> backings = new ArrayList<Backing>();
+	private final List<MemorySegment> offHeap = new ArrayList<MemorySegment>(); // of all backings
 
 	private final static ForkJoinPool FJP = new ForkJoinPool(4);
 	private static final int SEQ_LIMIT = N / 4;
 
-	public static void main(String[] args) {
+	private static final boolean SCALING = Boolean.getBoolean("scaling");
+	private static final int[] THRESHOLDS = { 1 << 14, 1 << 17, 1 << 20, 1 << 23 };
+	private static final int SCALING_RUNS = 10;
+	private static final int SCALING_STABLE_RUN = 3;
+	private static final double SATURATION = 0.9; // fraction of peak bandwidth that counts as saturated
+
+	public static void main(String[] args) throws Exception {
 		new SequentialVsRandomMemoryTiming().go();
 	}
 
@@ -43,7 +81,7 @@ public class SequentialVsRandomMemoryTiming {
 			a[i] = r.nextInt();
 	}
 
-	private void go() {
+	private void go() throws Exception {
 		assert (N & (N - 1)) == 0 : "N must be power of 2";
 		for (int pass = 1; pass <= PASSES; pass++) {
 			System.out.printf("=== PASS %d ===%n", pass);
@@ -65,9 +103,244 @@ public class SequentialVsRandomMemoryTiming {
 			time(pass, "sp2  ", sp2);
 			time(pass, "sp3  ", sp3);
 			time(pass, "par  ", par);
+			if (SIMD)
+				time(pass, "simd ", simd);
+			if (MLP) {
+				for (int c = 0; c < CHAINS.length; c++) {
+					if (chains[c] == null) {
+						chains[c] = new Chains(CHAINS[c]);
+						gathers[c] = new Gather(CHAINS[c]);
+					}
+					time(pass, String.format("ch%02d ", CHAINS[c]), chains[c]);
+					time(pass, String.format("ga%02d ", CHAINS[c]), gathers[c]);
+				}
+			}
+			if (PAGES) {
+				if (backings.isEmpty())
+					initBackings();
+				for (Backing backing : backings) {
+					time(pass, "rnd/" + backing.name, backing.rnd);
+					time(pass, "seq/" + backing.name, backing.seq);
+					time(pass, "ch01/" + backing.name, backing.chain);
+				}
+			}
+			if (isStable(rnd, seq, ss0, sp2, sp3, par) && (!SIMD || isStable(simd))) {
+				System.out.printf("=== STABLE AFTER PASS %d ===%n", pass);
+				break;
+			}
 		}
 		System.out.println("=== DONE ===");
 		System.out.printf(Locale.US, "Ratio rnd/seq = %.2f%n", rnd.stats.mean() / seq.stats.mean());
+		System.out.printf(Locale.US, "rnd: %s ns per iteration%n", rnd.stats.toSummaryString());
+		System.out.printf(Locale.US, "seq: %s ns per iteration%n", seq.stats.toSummaryString());
+		if (MLP) {
+			System.out.printf(Locale.US, "=== MLP (seq %.2f GB/s) ===%n", seq.bytes() / seq.stats.mean());
+			for (int c = 0; c < CHAINS.length; c++)
+				System.out.printf(Locale.US, "K = %2d: chain %6.2f GB/s, gather %6.2f GB/s%n", CHAINS[c],
+						chains[c].bytes() / chains[c].stats.mean(), gathers[c].bytes() / gathers[c].stats.mean());
+		}
+		if (PAGES)
+			printPages();
+		try (Results results = Results.open(SequentialVsRandomMemoryTiming.class)) {
+			record(results);
+			if (SCALING)
+				scaling(results);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	private void record(Results results) {
+		String[] names = { "rnd", "seq", "ss0", "sp2", "sp3", "par", "simd" };
+		for (String name : names)
+			if (SIMD || !name.equals("simd"))
+				results.record(name, N, 1, "ns/iteration", true, test(name).stats);
+		for (int step = 1; step <= MAX_SMALL_STEP; step++) {
+			if (pos[step] != null)
+				results.record(String.format("+%02d", step), N, 1, "ns/iteration", true, pos[step].stats);
+			if (neg[step] != null)
+				results.record(String.format("-%02d", step), N, 1, "ns/iteration", true, neg[step].stats);
+		}
+		for (int c = 0; c < CHAINS.length; c++) {
+			if (chains[c] != null)
+				results.record(String.format("ch%02d", CHAINS[c]), N, 1, "ns/iteration", true, chains[c].stats);
+			if (gathers[c] != null)
+				results.record(String.format("ga%02d", CHAINS[c]), N, 1, "ns/iteration", true, gathers[c].stats);
+		}
+		for (Backing backing : backings) {
+			results.record("rnd/" + backing.name, N, 1, "ns/iteration", true, backing.rnd.stats);
+			results.record("seq/" + backing.name, N, 1, "ns/iteration", true, backing.seq.stats);
+			results.record("ch01/" + backing.name, N, 1, "ns/iteration", true, backing.chain.stats);
+		}
+	}
+
+	private void initBackings() {
+		if (next == null)
+			buildCycle();
+		backings.add(new Backing("heap", null, new AnyStep(RND_STEP), new AnyStep(1), new Chains(1)));
+		for (boolean huge : new boolean[] { false, true }) {
+			Arena arena = Arena.ofAuto();
+			MemorySegment values = PageMemory.allocate(arena, N * 4L, huge);
+			MemorySegment next = PageMemory.allocate(arena, N * 4L, huge);
+			MemorySegment.copy(a, 0, values, JAVA_INT, 0, N);
+			MemorySegment.copy(this.next, 0, next, JAVA_INT, 0, N);
+			offHeap.add(values);
+			offHeap.add(next);
+			backings.add(new Backing(huge ? "2m" : "4k", values, new SegmentStep(values, RND_STEP),
+					new SegmentStep(values, 1), new SegmentChain(next)));
+		}
+	}
+
+	/**
+	 * Prints page sizes that were in effect at the end of the run and time differences of each backing from
+	 * the small-page one, which is the gain from huge pages.
+	 */
+	private void printPages() {
+		System.out.println("=== PAGES (ns per access) ===");
+		for (Backing backing : backings)
+			System.out.printf("%-4s: %s%n", backing.name, backing.segment == null ?
+					PageMemory.heapPageSize(offHeap) : PageMemory.pageSize(backing.segment));
+		Backing small = backings.get(1);
+		for (Backing backing : backings)
+			System.out.printf(Locale.US, "%-4s: rnd %7.3f (%+7.3f), seq %7.3f (%+7.3f), ch01 %7.3f (%+7.3f)%n",
+					backing.name,
+					backing.rnd.stats.mean(), backing.rnd.stats.mean() - small.rnd.stats.mean(),
+					backing.seq.stats.mean(), backing.seq.stats.mean() - small.seq.stats.mean(),
+					backing.chain.stats.mean(), backing.chain.stats.mean() - small.chain.stats.mean());
+	}
+
+	/**
+	 * Times {@link SumTask} with each of {@code THRESHOLDS}, {@code IntStream.parallel()} and manually partitioned
+	 * threads at each parallelism from 1 to the number of CPUs and prints their bandwidth, the best one per core,
+	 * and the smallest thread count that gets {@code SATURATION} of the peak bandwidth.
+	 */
+	private void scaling(Results results) throws Exception {
+		int cpus = Runtime.getRuntime().availableProcessors();
+		System.out.println("=== SCALING (GB/s) ===");
+		StringBuilder header = new StringBuilder("threads");
+		for (int threshold : THRESHOLDS)
+			header.append(String.format("%10s", "fjp/" + (threshold >> 10) + "K"));
+		header.append(String.format("%10s%10s%10s", "stream", "manual", "best/core"));
+		System.out.println(header);
+		double[] best = new double[cpus + 1];
+		for (int p = 1; p <= cpus; p++) {
+			ForkJoinPool pool = new ForkJoinPool(p);
+			int threads = p;
+			StringBuilder row = new StringBuilder(String.format("%7d", p));
+			for (int threshold : THRESHOLDS) {
+				Stats stats = bandwidth(() -> {
+					SumTask task = new SumTask(0, N, threshold);
+					pool.invoke(task);
+					return task.sum;
+				});
+				results.record("fjp/" + (threshold >> 10) + "K", N, p, "GB/s", false, stats);
+				best[p] = Math.max(best[p], stats.mean());
+				row.append(String.format(Locale.US, "%10.2f", stats.mean()));
+			}
+			// a stream runs its tasks in the pool of the worker that starts it
+			Stats stream = bandwidth(() -> pool.submit(() -> IntStream.of(a).parallel().sum()).join());
+			Stats manual;
+			try (SumThreads sumThreads = new SumThreads(threads)) {
+				manual = bandwidth(sumThreads::sum);
+			}
+			pool.shutdown();
+			results.record("stream", N, p, "GB/s", false, stream);
+			results.record("manual", N, p, "GB/s", false, manual);
+			best[p] = Math.max(best[p], Math.max(stream.mean(), manual.mean()));
+			row.append(String.format(Locale.US, "%10.2f%10.2f%10.2f", stream.mean(), manual.mean(), best[p] / p));
+			System.out.println(row);
+		}
+		int peak = 1;
+		for (int p = 2; p <= cpus; p++)
+			if (best[p] > best[peak])
+				peak = p;
+		int saturation = 1;
+		while (best[saturation] < SATURATION * best[peak])
+			saturation++;
+		System.out.printf(Locale.US, "Bandwidth saturates at %d threads: %.2f GB/s, peak %.2f GB/s at %d threads%n",
+				saturation, best[saturation], best[peak], peak);
+	}
+
+	/**
+	 * Bandwidth in GB/s of summing all of {@code a} with {@code sum}, in runs from {@code SCALING_STABLE_RUN} on.
+	 */
+	private Stats bandwidth(Callable<Integer> sum) throws Exception {
+		Stats stats = new Stats();
+		for (int run = 1; run <= SCALING_RUNS; run++) {
+			long start = System.nanoTime();
+			dummy += sum.call();
+			long time = System.nanoTime() - start;
+			if (run >= SCALING_STABLE_RUN)
+				stats.add(4.0 * N / time);
+		}
+		return stats;
+	}
+
+	/**
+	 * Sums {@code a} with {@code threads} platform threads, each summing its own contiguous part. Threads are
+	 * started once and released for each sum by a barrier, so that sums do not include thread start-up,
+	 * like those of pools that are already running.
+	 */
+	class SumThreads implements AutoCloseable {
+		private final int[] sums;
+		private final CyclicBarrier start;
+		private final CyclicBarrier done;
+		private volatile boolean closed;
+
+		SumThreads(int threads) {
+			int[] a = SequentialVsRandomMemoryTiming.this.a;
+			sums = new int[threads];
+			start = new CyclicBarrier(threads + 1);
+			done = new CyclicBarrier(threads + 1);
+			for (int k = 0; k < threads; k++) {
+				int from = (int)((long)N * k / threads);
+				int to = (int)((long)N * (k + 1) / threads);
+				int slot = k;
+				Thread worker = new Thread(() -> {
+					try {
+						while (true) {
+							start.await();
+							if (closed)
+								return;
+							int sum = 0;
+							for (int i = from; i < to; i++)
+								sum += a[i];
+							sums[slot] = sum;
+							done.await();
+						}
+					} catch (InterruptedException | BrokenBarrierException e) {
+						// main thread is gone
+					}
+				});
+				worker.setDaemon(true);
+				worker.start();
+			}
+		}
+
+		int sum() throws InterruptedException, BrokenBarrierException {
+			start.await();
+			done.await();
+			int sum = 0;
+			for (int s : sums)
+				sum += s;
+			return sum;
+		}
+
+		@Override
+		public void close() throws InterruptedException, BrokenBarrierException {
+			closed = true;
+			start.await();
+		}
+	}
+
+	/**
+	 * With {@code -DtargetCI=<percent>} stops before {@code PASSES} once all main tests are stable.
+	 */
+	private static boolean isStable(Test... tests) {
+		for (Test test : tests)
+			if (!test.stats.isStable())
+				return false;
+		return true;
 	}
 
 	private void time(int pass, String desc, Test test) {
@@ -76,13 +349,38 @@ public class SequentialVsRandomMemoryTiming {
 		double time = (double)(System.nanoTime() - start) / (N * REP);
 		String ss = "";
 		double avgTime = time;
+		boolean outlier = false;
 		if (pass >= STABLE_PASS) {
-			test.stats.add(time);
+			outlier = test.stats.add(time);
 			ss = test.stats.toString();
 			avgTime = test.stats.mean();
 		}
-		System.out.printf(Locale.US, "%s: %6.3f ns per iteration %s == %.2f GB/s (%d)%n",
-			desc, time, ss, 4 / avgTime, sum);
+		System.out.printf(Locale.US, "%s: %6.3f ns per iteration %s == %.2f GB/s (%d)%s%n",
+			desc, time, ss, test.bytes() / avgTime, sum, outlier ? " OUTLIER" : "");
+	}
+
+	/**
+	 * Looks up a test by the short name it is printed with, where {@code chK} and {@code gaK} are MLP tests with K chains.
+	 */
+	Test test(String name) {
+		switch (name) {
+			case "rnd": return rnd;
+			case "seq": return seq;
+			case "ss0": return ss0;
+			case "sp2": return sp2;
+			case "sp3": return sp3;
+			case "par": return par;
+			case "simd":
+				if (!SIMD)
+					throw new IllegalStateException("Run with --add-modules jdk.incubator.vector for simd");
+				return simd;
+			default:
+				if (name.matches("ch\\d+"))
+					return new Chains(Integer.parseInt(name.substring(2)));
+				if (name.matches("ga\\d+"))
+					return new Gather(Integer.parseInt(name.substring(2)));
+				throw new IllegalArgumentException(name);
+		}
 	}
 
 	private int runRep(Test test) {
@@ -97,6 +395,162 @@ public class SequentialVsRandomMemoryTiming {
 		final int[] a = SequentialVsRandomMemoryTiming.this.a;
 
 		public abstract int run();
+
+		/**
+		 * Bytes read from memory per iteration.
+		 */
+		public int bytes() {
+			return 4;
+		}
+	}
+
+	/**
+	 * Builds a random single cycle with Sattolo's algorithm, so that walking it from any index visits all of them.
+	 */
+	private void buildCycle() {
+		next = new int[N];
+		for (int i = 0; i < N; i++)
+			next[i] = i;
+		Random r = new Random(1);
+		for (int i = N - 1; i > 0; i--) {
+			int j = r.nextInt(i);
+			int t = next[i];
+			next[i] = next[j];
+			next[j] = t;
+		}
+		milestones = new int[MILESTONES];
+		int i = 0;
+		for (int m = 0; m < MILESTONES; m++) {
+			milestones[m] = i;
+			for (int step = 0; step < N / MILESTONES; step++)
+				i = next[i];
+		}
+	}
+
+	/**
+	 * {@code k} dependent chains through {@code next}, each reading the index of its next step from memory.
+	 * Chains start evenly spaced along the cycle and are interleaved in one loop,
+	 * so up to {@code k} cache misses can be in flight at the same time.
+	 */
+	class Chains extends Test {
+		final int[] start;
+
+		Chains(int k) {
+			if (next == null)
+				buildCycle();
+			start = new int[k];
+			for (int j = 0; j < k; j++)
+				start[j] = milestones[j * MILESTONES / k];
+		}
+
+		public int run() {
+			int[] next = SequentialVsRandomMemoryTiming.this.next;
+			int[] idx = start.clone();
+			int k = idx.length;
+			int sum = 0;
+			for (int step = N / k; step > 0; step--) {
+				for (int j = 0; j < k; j++) {
+					int i = next[idx[j]];
+					idx[j] = i;
+					sum += i;
+				}
+			}
+			return sum;
+		}
+	}
+
+	/**
+	 * Batched lookups: {@link Chains} that first advance all {@code k} chains,
+	 * then gather values at their current indices and reduce them.
+	 */
+	class Gather extends Chains {
+		Gather(int k) {
+			super(k);
+		}
+
+		public int run() {
+			int[] next = SequentialVsRandomMemoryTiming.this.next;
+			int[] idx = start.clone();
+			int k = idx.length;
+			int sum = 0;
+			for (int step = N / k; step > 0; step--) {
+				for (int j = 0; j < k; j++)
+					idx[j] = next[idx[j]];
+				for (int j = 0; j < k; j++)
+					sum += a[idx[j]];
+			}
+			return sum;
+		}
+
+		@Override
+		public int bytes() {
+			return 8;
+		}
+	}
+
+	/**
+	 * Tests of random, sequential and dependent random access to one kind of memory.
+	 */
+	class Backing {
+		final String name;
+		final MemorySegment segment; // null for the heap
+		final Test rnd;
+		final Test seq;
+		final Test chain;
+
+		Backing(String name, MemorySegment segment, Test rnd, Test seq, Test chain) {
+			this.name = name;
+			this.segment = segment;
+			this.rnd = rnd;
+			this.seq = seq;
+			this.chain = chain;
+		}
+	}
+
+	/**
+	 * {@link AnyStep} over an off-heap copy of {@code a}.
+	 */
+	class SegmentStep extends Test {
+		final MemorySegment values;
+		final int step;
+
+		SegmentStep(MemorySegment values, int step) {
+			this.values = values;
+			this.step = step;
+		}
+
+		public int run() {
+			MemorySegment values = this.values;
+			int sum = 0;
+			int i = 0;
+			do {
+				sum += values.getAtIndex(JAVA_INT, i);
+				i = (i + step) & (N - 1);
+			} while (i != 0);
+			return sum;
+		}
+	}
+
+	/**
+	 * One {@link Chains chain} through an off-heap copy of {@code next}.
+	 */
+	class SegmentChain extends Test {
+		final MemorySegment next;
+
+		SegmentChain(MemorySegment next) {
+			this.next = next;
+		}
+
+		public int run() {
+			MemorySegment next = this.next;
+			int i = 0;
+			int sum = 0;
+			for (int step = N; step > 0; step--) {
+				i = next.getAtIndex(JAVA_INT, i);
+				sum += i;
+			}
+			return sum;
+		}
 	}
 
 	class AnyStep extends Test {
@@ -154,6 +608,12 @@ public class SequentialVsRandomMemoryTiming {
 		}
 	}
 
+	class Simd extends Test {
+		public int run() {
+			return IntVectors.sum(a, 0, N);
+		}
+	}
+
 	class Parallel extends Test {
 		public int run() {
 			SumTask task = new SumTask(0, N);
@@ -165,26 +625,32 @@ public class SequentialVsRandomMemoryTiming {
 	class SumTask extends RecursiveAction {
 		final int from;
 		final int to;
+		final int threshold;
 		final int[] a = SequentialVsRandomMemoryTiming.this.a;
 
 		int sum;
 
 		public SumTask(int from, int to) {
+			this(from, to, SEQ_LIMIT);
+		}
+
+		public SumTask(int from, int to, int threshold) {
 			this.from = from;
 			this.to = to;
+			this.threshold = threshold;
 		}
 
 		@Override
 		protected void compute() {
-			if (to - from <= SEQ_LIMIT) {
+			if (to - from <= threshold) {
 				int sum = 0;
 				for (int i = from; i < to; i++)
 					sum += a[i];
 				this.sum = sum;
 			} else {
 				int mid = (from + to) / 2;
-				SumTask lo = new SumTask(from, mid);
-				SumTask hi = new SumTask(mid, to);
+				SumTask lo = new SumTask(from, mid, threshold);
+				SumTask hi = new SumTask(mid, to, threshold);
 				invokeAll(lo, hi);
 				sum = lo.sum + hi.sum;
 			}
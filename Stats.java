@@ -1,18 +1,83 @@
 import java.util.Locale;
 
 /**
+ * Streaming statistics of measurements, shared by all timing harnesses: mean and deviation (Welford),
+ * min and max, quantiles from a mergeable log-bucket sketch with 1% relative error,
+ * Student's t confidence interval of the mean and outliers by Tukey's fences.
+ * Harnesses use {@link #isStable()} to stop measuring once the confidence interval is narrow enough.
+ *
  * @author Roman Elizarov
  */
 class Stats {
+	/**
+	 * Target half-width of 95% confidence interval of the mean in percent of the mean, set with
+	 * {@code -DtargetCI=<percent>}. Zero (default) disables adaptive stopping.
+	 */
+	static final double TARGET_CI = Double.parseDouble(System.getProperty("targetCI", "0"));
+	static final int MIN_STABLE_N = 5;
+
+	private static final double RELATIVE_ERROR = 0.01;
+	private static final double GAMMA = (1 + RELATIVE_ERROR) / (1 - RELATIVE_ERROR);
+	private static final double LOG_GAMMA = Math.log(GAMMA);
+	private static final double OUTLIER_IQRS = 1.5;
+
+	// two-sided 95% quantiles of Student's t distribution for 1..30 degrees of freedom
+	private static final double[] T_975 = {
+		12.706, 4.303, 3.182, 2.776, 2.571, 2.447, 2.365, 2.306, 2.262, 2.228,
+		2.201, 2.179, 2.160, 2.145, 2.131, 2.120, 2.110, 2.101, 2.093, 2.086,
+		2.080, 2.074, 2.069, 2.064, 2.060, 2.056, 2.052, 2.048, 2.045, 2.042
+	};
+
 	private int n;
 	private double mean;
 	private double nvar;
+	private double min = Double.POSITIVE_INFINITY;
+	private double max = Double.NEGATIVE_INFINITY;
+	private int outliers;
 
-	public void add(double x) {
+	// sketch: counts[i - offset] is the number of values in (GAMMA^(i-1), GAMMA^i]
+	private long[] counts = new long[0];
+	private int offset;
+	private long zeros; // values <= 0 are not bucketed
+
+	/**
+	 * Adds a measurement and returns {@code true} if it is an outlier with respect to the previous ones.
+	 */
+	public boolean add(double x) {
+		boolean outlier = isOutlier(x);
+		if (outlier)
+			outliers++;
 		n++;
 		double prev = mean;
 		mean += (x - prev) / n;
 		nvar += (x - prev) * (x - mean);
+		min = Math.min(min, x);
+		max = Math.max(max, x);
+		addToSketch(x);
+		return outlier;
+	}
+
+	/**
+	 * Merges measurements of another instance into this one.
+	 */
+	public void add(Stats other) {
+		if (other.n == 0)
+			return;
+		int total = n + other.n;
+		double delta = other.mean - mean;
+		mean += delta * other.n / total;
+		nvar += other.nvar + delta * delta * ((double)n * other.n / total);
+		n = total;
+		min = Math.min(min, other.min);
+		max = Math.max(max, other.max);
+		outliers += other.outliers;
+		zeros += other.zeros;
+		for (int i = 0; i < other.counts.length; i++)
+			if (other.counts[i] != 0) {
+				int index = other.offset + i;
+				ensureBucket(index);
+				counts[index - offset] += other.counts[i];
+			}
 	}
 
 	public int n() {
@@ -27,8 +92,134 @@ class Stats {
 		return Math.sqrt(nvar / (n - 1));
 	}
 
+	public double min() {
+		return min;
+	}
+
+	public double max() {
+		return max;
+	}
+
+	public int outliers() {
+		return outliers;
+	}
+
+	/**
+	 * Approximate percentile from the sketch, within 1% of some measurement of about the same rank.
+	 */
+	public double quantile(double percentile) {
+		if (n == 0)
+			return Double.NaN;
+		long rank = (long)(percentile / 100 * (n - 1));
+		long count = zeros;
+		if (rank < count)
+			return Math.min(0, max);
+		for (int i = 0; i < counts.length; i++) {
+			count += counts[i];
+			if (rank < count)
+				return Math.max(min, Math.min(max, 2 * Math.pow(GAMMA, offset + i) / (GAMMA + 1)));
+		}
+		return max;
+	}
+
+	public double median() {
+		return quantile(50);
+	}
+
+	/**
+	 * Half-width of 95% confidence interval of the mean.
+	 */
+	public double ciHalfWidth() {
+		if (n < 2)
+			return Double.POSITIVE_INFINITY;
+		return t975(n - 1) * dev() / Math.sqrt(n);
+	}
+
+	/**
+	 * Two-sided 95% quantile of Student's t distribution with {@code df >= 1} degrees of freedom.
+	 */
+	static double t975(int df) {
+		return df <= T_975.length ? T_975[df - 1] : 1.96 + 2.4 / df;
+	}
+
+	/**
+	 * {@code true} when there are at least {@link #MIN_STABLE_N} measurements and half-width
+	 * of 95% confidence interval is within {@code targetPercent} of the mean.
+	 */
+	public boolean isStable(double targetPercent) {
+		return n >= MIN_STABLE_N && ciHalfWidth() <= Math.abs(mean) * targetPercent / 100;
+	}
+
+	/**
+	 * {@link #isStable(double)} with {@link #TARGET_CI}, always {@code false} when adaptive stopping is disabled.
+	 */
+	public boolean isStable() {
+		return TARGET_CI > 0 && isStable(TARGET_CI);
+	}
+
+	/**
+	 * {@code true} when x is beyond 1.5 interquartile ranges from the quartiles of at least
+	 * {@link #MIN_STABLE_N} measurements. Interquartile range is never taken below the sketch error.
+	 */
+	public boolean isOutlier(double x) {
+		if (n < MIN_STABLE_N)
+			return false;
+		double q1 = quantile(25);
+		double q3 = quantile(75);
+		double iqr = Math.max(q3 - q1, RELATIVE_ERROR * (Math.abs(q1) + Math.abs(q3)));
+		return x < q1 - OUTLIER_IQRS * iqr || x > q3 + OUTLIER_IQRS * iqr;
+	}
+
 	@Override
 	public String toString() {
 		return String.format(Locale.US, "%.3f +- %.3f", mean(), dev());
 	}
+
+	/**
+	 * Deviation of min and max from the mean in percent, like {@code [-1.23% | 1.00 - 1.01 - 1.05 | +3.96%]},
+	 * or an empty string for less than two measurements.
+	 */
+	public String toRangeString() {
+		if (n > 1) {
+			return String.format(Locale.US, "[%+6.2f%% | %.2f - %.2f - %.2f | %+6.2f%%]",
+					(min - mean) * 100 / mean, min, mean, max, (max - mean) * 100 / mean);
+		} else
+			return "";
+	}
+
+	/**
+	 * Median, 95% confidence interval of the mean in percent and the number of outliers.
+	 */
+	public String toSummaryString() {
+		return String.format(Locale.US, "median %.3f, mean %.3f +- %.2f%% (95%% CI, n=%d), %d outliers",
+				median(), mean, ciHalfWidth() * 100 / Math.abs(mean), n, outliers);
+	}
+
+	private void addToSketch(double x) {
+		if (!(x > 0)) {
+			zeros++;
+			return;
+		}
+		int index = (int)Math.ceil(Math.log(x) / LOG_GAMMA);
+		ensureBucket(index);
+		counts[index - offset]++;
+	}
+
+	private void ensureBucket(int index) {
+		if (counts.length == 0) {
+			counts = new long[16];
+			offset = index - counts.length / 2;
+			return;
+		}
+		if (index >= offset && index < offset + counts.length)
+			return;
+		int lo = Math.min(index, offset);
+		int hi = Math.max(index, offset + counts.length - 1);
+		int slack = hi - lo + 1; // double the range on the side that grows
+		int newOffset = index < offset ? lo - slack : lo;
+		long[] newCounts = new long[hi - lo + 1 + slack];
+		System.arraycopy(counts, 0, newCounts, offset - newOffset, counts.length);
+		counts = newCounts;
+		offset = newOffset;
+	}
 }
@@ -0,0 +1,140 @@
+import java.util.*;
+import java.util.function.IntBinaryOperator;
+import java.util.function.IntSupplier;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Bridge from JMH benchmarks in {@code benchmarks} package to the code in the default package, which cannot
+ * be imported from a named package. Each method prepares the data the same way the corresponding harness does
+ * and returns a kernel that runs one iteration of its timed loop.
+ */
+public class JmhKernels {
+	private JmhKernels() {}
+
+	public static IntList createList(String impl, int size, boolean varyingBits) throws Exception {
+		return IntListData.create(impl, size, varyingBits, null);
+	}
+
+	/**
+	 * {@link IntListIterationTiming}: sum of a list of the given size,
+	 * with {@code mode} one of {@code external}, {@code internal}.
+	 */
+	public static IntSupplier intListIteration(String impl, int size, String mode) throws Exception {
+		IntList list = createList(impl, size, false);
+		switch (mode) {
+			case "external":
+				return () -> {
+					int sum = 0;
+					for (int i = 0; i < size; i++)
+						sum += list.getInt(i);
+					return sum;
+				};
+			case "internal":
+				return () -> list.sum(0, size);
+			default:
+				throw new IllegalArgumentException(mode);
+		}
+	}
+
+	/**
+	 * {@link IntListThroughput}: sum of {@code op} over a list of the given size,
+	 * with {@code mode} one of {@code external}, {@code internal}, {@code simd}.
+	 */
+	public static IntSupplier intListThroughput(String impl, int size, String op, String mode) throws Exception {
+		IntList list = createList(impl, size, true);
+		IntOp intOp = IntOp.valueOf(op);
+		switch (mode) {
+			case "external":
+				return () -> {
+					int sum = 0;
+					for (int i = 0; i < size; i++)
+						sum += intOp.compute(list.getInt(i));
+					return sum;
+				};
+			case "internal":
+				IntBinaryOperator sumOp = (sum, x) -> sum + intOp.compute(x);
+				return () -> list.reduce(0, size, 0, sumOp);
+			case "simd":
+				return () -> IntVectors.sum(list, 0, size, intOp.factor());
+			default:
+				throw new IllegalArgumentException(mode);
+		}
+	}
+
+	/**
+	 * {@link IntListThroughput} with {@code -Ddispatch}: sum over a {@link IntList.ViaJavaArray} of the given size
+	 * with the first {@code distinctOps} of {@code X2, X37, X27, X31, ID} applied through one call site
+	 * ({@code chain}) or fused into one kernel ({@code fused}).
+	 */
+	public static IntSupplier intOpDispatch(int size, int distinctOps, String dispatch) throws Exception {
+		IntList.ViaJavaArray list = (IntList.ViaJavaArray)createList(IntList.ViaJavaArray.class.getSimpleName(), size, true);
+		IntOp[] all = { IntOp.X2, IntOp.X37, IntOp.X27, IntOp.X31, IntOp.ID };
+		IntOpPipeline ops = new IntOpPipeline(Arrays.copyOf(all, distinctOps));
+		IntUnaryOperator kernel;
+		switch (dispatch) {
+			case "chain":
+				kernel = ops;
+				break;
+			case "fused":
+				kernel = ops.fuse();
+				break;
+			default:
+				throw new IllegalArgumentException(dispatch);
+		}
+		return () -> {
+			int sum = 0;
+			for (int i = 0; i < size; i++)
+				sum += kernel.applyAsInt(list.getInt(i));
+			return sum;
+		};
+	}
+
+	/**
+	 * {@link IntListThroughput} with writers: a reader kernel that sums {@code op} over the last {@code size}
+	 * elements of a {@link IntList.ViaConcurrentSegments} and a writer kernel that appends one element to it.
+	 * Like the harness, the writer stops appending once {@link IntListThroughput#APPEND_LIMIT} elements were added
+	 * to the list, to bound memory within one iteration.
+	 */
+	public static IntSupplier[] concurrentScanAndAppend(int size, String op) throws Exception {
+		IntList list = createList(IntList.ViaConcurrentSegments.class.getSimpleName(), size, true);
+		IntOp intOp = IntOp.valueOf(op);
+		IntBinaryOperator sumOp = (sum, x) -> sum + intOp.compute(x);
+		int[] x = { 1 }; // the writer kernel is only called from one thread
+		int limit = IntListThroughput.APPEND_LIMIT + size;
+		return new IntSupplier[] {
+			() -> {
+				int to = list.size();
+				return list.reduce(to - size, to, 0, sumOp);
+			},
+			() -> {
+				int v = x[0];
+				v ^= v << 13;
+				v ^= v >>> 17;
+				v ^= v << 5;
+				x[0] = v;
+				if (list.size() < limit)
+					list.add(v >>> (v & 31));
+				return v;
+			}
+		};
+	}
+
+	/**
+	 * {@link SequentialVsRandomMemoryTiming}: one run of the test with the given short name.
+	 */
+	public static IntSupplier memoryTest(String name) {
+		SequentialVsRandomMemoryTiming timing = new SequentialVsRandomMemoryTiming();
+		SequentialVsRandomMemoryTiming.Test test = timing.test(name);
+		return test::run;
+	}
+
+	/**
+	 * {@link ModifiableIntSum}: one iteration over all containers,
+	 * with {@code variant} one of {@code copy}, {@code immutable}, {@code store}.
+	 */
+	public static IntSupplier modifiableIntSum(String variant) {
+		ModifiableIntSum sum = new ModifiableIntSum();
+		ModifiableIntSum.Variant v = ModifiableIntSum.Variant.valueOf(variant.toUpperCase(Locale.US));
+		return () -> sum.runIteration(v);
+	}
+}
@@ -0,0 +1,51 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * JMH port of {@code IntListThroughput -Dwriters=1}: one appender and three readers on a shared
+ * {@code IntList.ViaConcurrentSegments}. Readers scan the last {@code size} elements.
+ * Change the number of readers with {@code -tg 1,<readers>}. The appender stops adding elements after
+ * {@code IntListThroughput.APPEND_LIMIT} per iteration, like the harness, so keep iterations short enough
+ * for the append score to be measured below that limit.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = { "--enable-preview", "--add-modules", "jdk.incubator.vector" })
+public class AppendWhileScanBenchmark {
+	@Param({ "1000", "10000", "100000", "1000000", "10000000" })
+	public int size;
+
+	@Param({ "ID", "X2", "X27", "X31", "X37" })
+	public String op;
+
+	private IntSupplier reader;
+	private IntSupplier writer;
+
+	@Setup(Level.Iteration) // fresh list, so that appends do not pile up across iterations
+	public void setup() throws Exception {
+		IntSupplier[] kernels = Kernels.get("concurrentScanAndAppend", size, op);
+		reader = kernels[0];
+		writer = kernels[1];
+	}
+
+	@Benchmark
+	@Group("appendWhileScan")
+	@GroupThreads(1)
+	public int append() {
+		return writer.getAsInt();
+	}
+
+	@Benchmark
+	@Group("appendWhileScan")
+	@GroupThreads(3)
+	public int scan() {
+		return reader.getAsInt();
+	}
+}
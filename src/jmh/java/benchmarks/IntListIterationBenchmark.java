@@ -0,0 +1,40 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * JMH port of {@code IntListIterationTiming}: external {@code getInt} loop vs internal {@code IntList.sum}.
+ * Score is the time of one pass over the whole list.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = { "--enable-preview", "--add-modules", "jdk.incubator.vector" })
+public class IntListIterationBenchmark {
+	@Param({ "ViaArrayList", "ViaJavaArray", "ViaChunkedArray", "ViaUnrolledList", "ViaBitPacked", "ViaConcurrentSegments",
+			"ViaByteBuffer1", "ViaByteBuffer2", "ViaByteBuffer3", "ViaMemorySegment", "ViaMappedFile" })
+	public String impl;
+
+	@Param({ "1000", "10000", "100000", "1000000", "10000000" })
+	public int size;
+
+	@Param({ "external", "internal" })
+	public String mode;
+
+	private IntSupplier kernel;
+
+	@Setup
+	public void setup() throws Exception {
+		kernel = Kernels.get("intListIteration", impl, size, mode);
+	}
+
+	@Benchmark
+	public int iterate() {
+		return kernel.getAsInt();
+	}
+}
@@ -0,0 +1,43 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * JMH port of {@code IntListThroughput}. Run with {@code -t <threads>} to scale the number of threads,
+ * each of them scanning its own list. Score is the number of passes over the whole list.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = { "--enable-preview", "--add-modules", "jdk.incubator.vector" })
+public class IntListThroughputBenchmark {
+	@Param({ "ViaArrayList", "ViaJavaArray", "ViaChunkedArray", "ViaUnrolledList", "ViaBitPacked", "ViaConcurrentSegments",
+			"ViaByteBuffer1", "ViaByteBuffer2", "ViaByteBuffer3", "ViaMemorySegment", "ViaMappedFile" })
+	public String impl;
+
+	@Param({ "1000", "10000", "100000", "1000000", "10000000" })
+	public int size;
+
+	@Param({ "ID", "X2", "X27", "X31", "X37" })
+	public String op;
+
+	@Param({ "external", "internal", "simd" })
+	public String mode;
+
+	private IntSupplier kernel;
+
+	@Setup
+	public void setup() throws Exception {
+		kernel = Kernels.get("intListThroughput", impl, size, op, mode);
+	}
+
+	@Benchmark
+	public int scan() {
+		return kernel.getAsInt();
+	}
+}
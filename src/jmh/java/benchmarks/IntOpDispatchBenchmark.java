@@ -0,0 +1,40 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * JMH port of {@code IntListThroughput -Ddispatch}: cost of applying a chain of 1, 2 or 5 distinct
+ * {@code IntOp}s through one call site compared to the same chain fused into one kernel.
+ * Score is the number of passes over the whole list.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = { "--enable-preview", "--add-modules", "jdk.incubator.vector" })
+public class IntOpDispatchBenchmark {
+	@Param({ "1000", "100000" })
+	public int size;
+
+	@Param({ "1", "2", "5" })
+	public int distinctOps;
+
+	@Param({ "chain", "fused" })
+	public String dispatch;
+
+	private IntSupplier kernel;
+
+	@Setup
+	public void setup() throws Exception {
+		kernel = Kernels.get("intOpDispatch", size, distinctOps, dispatch);
+	}
+
+	@Benchmark
+	public int scan() {
+		return kernel.getAsInt();
+	}
+}
@@ -0,0 +1,26 @@
+package benchmarks;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/**
+ * Calls factory methods of {@code JmhKernels}, which is in the default package and can only be reached reflectively.
+ * Reflection is used only during setup, kernels themselves are called directly.
+ */
+class Kernels {
+	private Kernels() {}
+
+	@SuppressWarnings("unchecked")
+	static <T> T get(String method, Object... args) throws Exception {
+		Class<?> kernels = Class.forName("JmhKernels");
+		for (Method m : kernels.getMethods())
+			if (m.getName().equals(method) && m.getParameterCount() == args.length) {
+				try {
+					return (T)m.invoke(null, args);
+				} catch (InvocationTargetException e) {
+					throw (Exception)e.getCause();
+				}
+			}
+		throw new NoSuchMethodException(method);
+	}
+}
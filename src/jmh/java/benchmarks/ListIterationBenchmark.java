@@ -0,0 +1,43 @@
+package benchmarks;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * JMH port of {@code ListIterationTiming}: iteration on {@code LinkedList<Integer>} vs {@code ArrayList<Integer>}.
+ * Score is the time of one pass over the whole list.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = { "--enable-preview", "--add-modules", "jdk.incubator.vector" })
+public class ListIterationBenchmark {
+	@Param({ "java.util.LinkedList", "java.util.ArrayList" })
+	public String className;
+
+	@Param({ "1000", "10000", "100000", "1000000" })
+	public int size;
+
+	private List<Integer> list;
+
+	@Setup
+	@SuppressWarnings("unchecked")
+	public void setup() throws Exception {
+		list = (List<Integer>)Class.forName(className).getDeclaredConstructor().newInstance();
+		Random random = new Random(1);
+		for	(int i = 0; i < size; i++)
+			list.add(random.nextInt());
+	}
+
+	@Benchmark
+	public int iterate() {
+		int sum = 0;
+		for (Integer integer : list)
+			sum += integer;
+		return sum;
+	}
+}
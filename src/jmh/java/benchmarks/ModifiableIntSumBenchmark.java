@@ -0,0 +1,33 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * JMH port of {@code ModifiableIntSum}. Score is the time of one pass over all containers.
+ * Add {@code -prof gc} to see whether escape analysis removed the defensive copies of the {@code copy} variant.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = { "--enable-preview", "--add-modules", "jdk.incubator.vector" })
+public class ModifiableIntSumBenchmark {
+	@Param({ "copy", "immutable", "store" })
+	public String variant;
+
+	private IntSupplier kernel;
+
+	@Setup
+	public void setup() throws Exception {
+		kernel = Kernels.get("modifiableIntSum", variant);
+	}
+
+	@Benchmark
+	public int sum() {
+		return kernel.getAsInt();
+	}
+}
@@ -0,0 +1,32 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * JMH port of {@code SequentialVsRandomMemoryTiming}. Score is the time of one pass over the 128 MB array.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(value = 2, jvmArgsAppend = { "--enable-preview", "--add-modules", "jdk.incubator.vector" })
+public class SequentialVsRandomMemoryBenchmark {
+	@Param({ "rnd", "seq", "ss0", "sp2", "sp3", "par", "simd", "ch01", "ch04", "ch16", "ch32", "ga04", "ga16", "ga32" })
+	public String test;
+
+	private IntSupplier kernel;
+
+	@Setup
+	public void setup() throws Exception {
+		kernel = Kernels.get("memoryTest", test);
+	}
+
+	@Benchmark
+	public int run() {
+		return kernel.getAsInt();
+	}
+}